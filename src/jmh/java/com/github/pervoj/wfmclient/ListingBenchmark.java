@@ -0,0 +1,248 @@
+/* ListingBenchmark.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of file list parsing and tree building
+ *
+ * Build with "mvn -P benchmarks package" and run with
+ * "java -cp target/wfm-client-*-jar-with-dependencies.jar org.openjdk.jmh.Main ListingBenchmark -prof gc",
+ * the GC profiler reports allocation rate of every benchmark.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g", "-Djava.awt.headless=true"})
+public class ListingBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    
+    @Param({"flat", "wide", "deep"})
+    public String shape;
+    
+    private String[] entries;
+    private String[] paths;
+    private byte[] page;
+    private ListingIndex index;
+    
+    /**
+     * Generates file list and API page of benchmarked size and shape
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        entries = generate(shape, size);
+        page = ("<html><body><div id=\"wfm-api\">" + String.join("<br>\n", entries) + "</div></body></html>").getBytes(StandardCharsets.UTF_8);
+        index = new ListingIndex(entries);
+        
+        // Paths as used by index, directories without trailing slash
+        paths = new String[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            paths[i] = entries[i].endsWith("/") ? entries[i].substring(0, entries[i].length() - 1) : entries[i];
+        }
+    }
+    
+    /**
+     * Parsing of API page
+     * 
+     * @return Parsed entries
+     * @throws Exception when page can't be parsed
+     */
+    @Benchmark
+    public String[] parse() throws Exception {
+        return new ApiParser().readApiEntries(new ByteArrayInputStream(page));
+    }
+    
+    /**
+     * Building of file list index
+     * 
+     * @return Index
+     */
+    @Benchmark
+    public ListingIndex buildIndex() {
+        return new ListingIndex(entries);
+    }
+    
+    /**
+     * Parsing of API page and building of file list index, as when server is loaded
+     * 
+     * @return Index
+     * @throws Exception when page can't be parsed
+     */
+    @Benchmark
+    public ListingIndex parseAndBuildIndex() throws Exception {
+        return new ListingIndex(new ApiParser().readApiEntries(new ByteArrayInputStream(page)));
+    }
+    
+    /**
+     * Types of all items, as they are shown in the tree
+     * 
+     * @return Count of directories
+     */
+    @Benchmark
+    public int types() {
+        int directories = 0;
+        for (String path : paths) {
+            if (index.getType(path) == ListingIndex.Type.DIRECTORY) {
+                directories++;
+            }
+        }
+        return directories;
+    }
+    
+    /**
+     * Expanding of whole tree, worst case of lazy tree nodes
+     * 
+     * @return Root node
+     */
+    @Benchmark
+    public ListingNode expandTree() {
+        ListingNode root = new ListingNode(index, "", "server");
+        ArrayList<ListingNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        while (!nodes.isEmpty()) {
+            ListingNode node = nodes.remove(nodes.size() - 1);
+            node.loadChildren();
+            for (int i = 0; i < node.getChildCount(); i++) {
+                nodes.add((ListingNode) node.getChildAt(i));
+            }
+        }
+        return root;
+    }
+    
+    /**
+     * Heap retained by index and by search index of all items, measured once
+     * 
+     * The file list isn't retained by the index, it is created for the measurement,
+     * so the bytes per entry are all what a loaded server costs. Event counters
+     * are summed over iterations, so there is only one measured iteration.
+     * 
+     * @param retained Counter of retained bytes
+     * @return Search index, which holds the index
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(iterations = 1)
+    public SearchIndex retainedIndex(RetainedHeap retained) {
+        long before = usedHeap();
+        ListingIndex built = new ListingIndex(generate(shape, size));
+        long indexed = usedHeap();
+        SearchIndex search = new SearchIndex();
+        search.put("server", built);
+        long searched = usedHeap();
+        
+        retained.indexBytes = indexed - before;
+        retained.indexBytesPerEntry = retained.indexBytes / built.size();
+        retained.searchBytesPerEntry = (searched - indexed) / built.size();
+        return search;
+    }
+    
+    /**
+     * Returns used heap after garbage collection
+     * 
+     * @return Used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    /**
+     * Generates file list
+     * 
+     * Flat list has all files in root directory, wide list has 1000 directories
+     * with files and deep list has branches of 50 items, where files are in
+     * directories nested up to 10 levels.
+     * 
+     * @param shape flat, wide or deep
+     * @param size Count of files and directories
+     * @return File list as returned by API
+     */
+    static String[] generate(String shape, int size) {
+        ArrayList<String> list = new ArrayList<>(size);
+        switch (shape) {
+            case "flat":
+                for (int i = 0; list.size() < size; i++) {
+                    list.add("file-" + i + ".txt");
+                }
+                break;
+            case "wide":
+                int dirs = Math.max(1, Math.min(1000, size / 100));
+                for (int d = 0; d < dirs && list.size() < size; d++) {
+                    list.add("dir-" + d + "/");
+                }
+                for (int i = 0; list.size() < size; i++) {
+                    list.add("dir-" + (i % dirs) + "/file-" + i + ".txt");
+                }
+                break;
+            case "deep":
+                String path = "";
+                for (int i = 0; list.size() < size; i++) {
+                    if (i % 50 == 0) { // Start new branch
+                        path = "branch-" + i / 50 + "/";
+                        list.add(path);
+                    } else if (i % 5 == 0) { // Go one level deeper
+                        path += "level-" + i % 50 + "/";
+                        list.add(path);
+                    } else {
+                        list.add(path + "file-" + i + ".txt");
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        return list.toArray(new String[0]);
+    }
+    
+    /**
+     * Counter of heap retained by benchmarked structures
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedHeap {
+        public long indexBytes;
+        public long indexBytesPerEntry;
+        public long searchBytesPerEntry;
+    }
+}
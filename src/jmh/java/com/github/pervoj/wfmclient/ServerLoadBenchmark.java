@@ -0,0 +1,215 @@
+/* ServerLoadBenchmark.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Load benchmarks of loading and downloading from many local WFM servers
+ *
+ * Every benchmark operation refreshes all servers or downloads one file
+ * from every server, so the score is count of rounds per second. Secondary
+ * results show bytes received from network and bytes decoded from them per
+ * second, so the effect of compression can be compared.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = {"-Djava.awt.headless=true"})
+public class ServerLoadBenchmark {
+    @Param({"1", "10", "50"})
+    public int servers;
+    
+    @Param({"0", "50"})
+    public long latency;
+    
+    @Param({"10000"})
+    public int listingSize;
+    
+    @Param({"true", "false"})
+    public boolean compression;
+    
+    private ArrayList<StandInServer> standIns;
+    private ExecutorService loadExecutor;
+    private DownloadQueue downloadQueue;
+    private File downloadDir;
+    private String downloadedPath;
+    
+    /**
+     * Starts local servers
+     * 
+     * @throws Exception when server can't be started
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        String[] paths = ListingBenchmark.generate("wide", listingSize);
+        downloadedPath = paths[paths.length - 1];
+        
+        standIns = new ArrayList<>();
+        for (int i = 0; i < servers; i++) {
+            StandInServer standIn = StandInServer.generate(paths, 256 * 1024);
+            standIn.setLatency(latency);
+            standIn.setCompression(compression);
+            standIns.add(standIn.start());
+        }
+        
+        // Same limits as default settings
+        loadExecutor = Executors.newFixedThreadPool(4);
+        downloadQueue = new DownloadQueue(4, 2);
+        ApiParser.setDownloadCompression(compression);
+        downloadDir = Files.createTempDirectory("wfm-benchmark").toFile();
+    }
+    
+    /**
+     * Stops local servers and deletes downloaded files
+     * 
+     * @throws Exception when downloaded files can't be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        loadExecutor.shutdownNow();
+        for (StandInServer standIn : standIns) {
+            standIn.close();
+        }
+        
+        // Delete files before their directories
+        try (Stream<Path> paths = Files.walk(downloadDir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    /**
+     * Loads file lists of all servers without cache, as after start of application
+     * 
+     * @param bytes Counters of transferred bytes
+     * @return Count of loaded items
+     * @throws Exception when server can't be loaded
+     */
+    @Benchmark
+    public int refresh(TransferredBytes bytes) throws Exception {
+        bytes.begin();
+        ArrayList<Future<Integer>> loads = new ArrayList<>();
+        for (StandInServer standIn : standIns) {
+            loads.add(loadExecutor.submit(() -> new ListingIndex(new ApiParser().getListing(standIn.getUrl(), null).getEntries()).size()));
+        }
+        
+        int count = 0;
+        for (Future<Integer> load : loads) {
+            count += load.get();
+        }
+        bytes.end();
+        return count;
+    }
+    
+    /**
+     * Downloads one file from every server through download queue
+     * 
+     * @param bytes Counters of transferred bytes
+     * @return Count of downloaded files
+     * @throws Exception when waiting was interrupted
+     */
+    @Benchmark
+    public int download(TransferredBytes bytes) throws Exception {
+        bytes.begin();
+        ArrayList<DownloadJob> jobs = new ArrayList<>();
+        for (int i = 0; i < standIns.size(); i++) {
+            File file = new File(downloadDir, i + File.separator + downloadedPath.replace("/", File.separator));
+            jobs.add(downloadQueue.add(new DownloadJob("server " + i, standIns.get(i).getUrl(), downloadedPath, file,
+                    DownloadJob.Priority.BULK, null, null)));
+        }
+        
+        int count = 0;
+        for (DownloadJob job : jobs) {
+            job.waitFor();
+            if (job.getState() == DownloadJob.State.FINISHED) {
+                count++;
+            }
+        }
+        bytes.end();
+        return count;
+    }
+    
+    /**
+     * Counters of bytes transferred by benchmark operations, reported as secondary results
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class TransferredBytes {
+        /** Bytes received from network, compressed if server compressed them */
+        public long receivedBytes;
+        
+        /** Bytes decoded from received bytes */
+        public long decodedBytes;
+        
+        private long received;
+        private long decoded;
+        
+        /**
+         * Resets counters before every iteration
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            receivedBytes = 0;
+            decodedBytes = 0;
+        }
+        
+        /**
+         * Remembers transfer counters of HTTP transport before operation
+         */
+        void begin() {
+            received = HttpTransport.getReceivedBytes();
+            decoded = HttpTransport.getDecodedBytes();
+        }
+        
+        /**
+         * Adds bytes transferred during operation to counters
+         */
+        void end() {
+            receivedBytes += HttpTransport.getReceivedBytes() - received;
+            decodedBytes += HttpTransport.getDecodedBytes() - decoded;
+        }
+    }
+}
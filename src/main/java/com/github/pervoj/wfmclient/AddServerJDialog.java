@@ -18,8 +18,9 @@
 
 package com.github.pervoj.wfmclient;
 
-import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
 
 /**
  * JDialog used for adding server
@@ -27,13 +28,14 @@ import javax.swing.JOptionPane;
  * @author Vojtěch Perník <pervoj@gmx.com>
  */
 public class AddServerJDialog extends javax.swing.JDialog {
-    private ArrayList<String> servers;
+    private ServerRegistry servers;
+    private ServerRegistry.Server added;
     private boolean canceled;
 
     /**
      * Add JDialog constructor method
      */
-    public AddServerJDialog(java.awt.Frame parent, boolean modal, ArrayList<String> servers) {
+    public AddServerJDialog(java.awt.Frame parent, boolean modal, ServerRegistry servers) {
         super(parent, modal);
         initComponents();
         setLocationRelativeTo(parent);
@@ -52,6 +54,26 @@ public class AddServerJDialog extends javax.swing.JDialog {
         return canceled;
     }
     
+    /**
+     * Returns added server
+     * 
+     * @return Added server, null if dialog was canceled
+     */
+    public ServerRegistry.Server getAdded() {
+        return added;
+    }
+    
+    /**
+     * Disables the dialog while server list file is being saved
+     * 
+     * @param saving true - saving started, false - saving finished
+     */
+    private void setSaving(boolean saving) {
+        addJButton.setEnabled(!saving);
+        cancelJButton.setEnabled(!saving);
+        setDefaultCloseOperation(saving ? javax.swing.WindowConstants.DO_NOTHING_ON_CLOSE : javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+    }
+    
     /**
      * This method is called from within the constructor to initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is always
@@ -159,22 +181,36 @@ public class AddServerJDialog extends javax.swing.JDialog {
             // Show information message
             JOptionPane.showMessageDialog(this, "You must fill all of the fields!", "Error", JOptionPane.WARNING_MESSAGE);
         } else {
-            // Check if is this server name used
-            boolean used = false;
-            for (int i = 0; i < servers.size(); i++) {
-                if (servers.get(i).split("///")[0].equals(nameJTextField.getText())) {
-                    used = true;
-                    break;
-                }
-            }
-            
-            if (used) { // If is this server name used:
+            if (servers.contains(nameJTextField.getText())) { // If is this server name used:
                 // Show information message
                 JOptionPane.showMessageDialog(this, "This server name is already taken!", "Error", JOptionPane.WARNING_MESSAGE);
             } else {
-                servers.add(nameJTextField.getText() + "///" + urlJTextField.getText()); // Add server to the server array list
-                canceled = false; // Dialog wasn't canceled
-                dispose(); // Close dialog
+                String name = nameJTextField.getText();
+                String url = urlJTextField.getText();
+                setSaving(true);
+                
+                // Add server to the registry, which saves it to server list file in background
+                new SwingWorker<ServerRegistry.Server, Void>() {
+                    @Override
+                    protected ServerRegistry.Server doInBackground() throws Exception {
+                        return servers.add(name, url);
+                    }
+                    
+                    @Override
+                    protected void done() {
+                        setSaving(false);
+                        try {
+                            added = get();
+                            canceled = false; // Dialog wasn't canceled
+                            dispose(); // Close dialog
+                        } catch (ExecutionException e) {
+                            // Show error and keep dialog open if something went wrong
+                            JOptionPane.showMessageDialog(AddServerJDialog.this, e.getCause().getMessage(), "Error adding server", JOptionPane.ERROR_MESSAGE);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }.execute();
             }
         }
     }//GEN-LAST:event_addJButtonActionPerformed
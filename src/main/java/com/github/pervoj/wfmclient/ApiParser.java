@@ -18,14 +18,41 @@
 
 package com.github.pervoj.wfmclient;
 
-import java.io.FileOutputStream;
-import java.net.URL;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Scanner;
-import javax.swing.tree.DefaultMutableTreeNode;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Class for comunication between application and WFM api on server
@@ -33,154 +60,319 @@ import javax.swing.tree.DefaultMutableTreeNode;
  * @author Vojtěch Perník <pervoj@gmx.com>
  */
 public class ApiParser {
+    private static final String API_START = "<div id=\"wfm-api\">";
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+    private static final ConcurrentHashMap<String, Long> CHECKED_SERVERS = new ConcurrentHashMap<>();
+    private static volatile long checkTtl = 10 * 60 * 1000;
+    private static volatile int downloadSegments = 4;
+    private static volatile long minSegmentSize = 8 * 1024 * 1024;
+    private static volatile boolean downloadCompression = false;
+    
     /**
-     * Method for recursive filling directory tree node with subdirectories and subfiles
+     * Returns tree node for specified WFM server, its files and directories are created when the node is expanded
      * 
-     * @param rootNode Directory tree node which you want to fill
-     * @param allFiles Complete array of files
-     * @param files Array of subdirectories and files which belongs to this directory
+     * @param url WFM server URL
+     * @param title Title for WFM server
+     * @return Tree node of server root directory
+     * @throws Exception when on specified URL isn't WFM server or something went wrong
      */
-    private void addChilds(DefaultMutableTreeNode rootNode, String[] allFiles, String[] files) {
-        for (String file : files) { // Iterate file array
-            DefaultMutableTreeNode subItem = new DefaultMutableTreeNode(getNameFromPath(file)); // Define subitem tree node
-            
-            if (isDir(file, allFiles)) { // Has iterated item another subitems?
-                addChilds(subItem, allFiles, filterDir(file, allFiles)); // Fill subitem with its subitems
+    public ListingNode getFilesNode(String url, String title) throws Exception {
+        ListingIndex index = buildIndex(url, getListing(url, null).getEntries()); // Get file list from WFM URL and index it
+        return new ListingNode(index, "", title); // Return tree node
+    }
+    
+    /**
+     * Checks if on specified URL is WFM server, result is remembered for check time to live
+     * 
+     * @param url WFM server URL
+     * @param title Title for WFM server
+     * @throws Exception when on specified URL isn't WFM server
+     */
+    public void checkServer(String url, String title) throws Exception {
+        Long checked = CHECKED_SERVERS.get(url);
+        if (checked != null && System.currentTimeMillis() - checked < checkTtl) { // Was server checked recently?
+            return;
+        }
+        
+        FlightEvents.CheckApi event = new FlightEvents.CheckApi();
+        event.begin();
+        AtomicLong received = new AtomicLong();
+        try {
+            if (!String.join("\n", getApiEntries(url + "?check-api", received)).equals("web-file-manager")) { // Check if API returns "web-file-manager", if not:
+                throw new Exception(title + " isn't WFM server!"); // Throw exception
             }
-            
-            rootNode.add(subItem); // Add subitem to root tree node
+        } finally {
+            event.end(url, "?check-api", received.get());
         }
+        
+        CHECKED_SERVERS.put(url, System.currentTimeMillis());
     }
     
     /**
-     * Returns last part of path - file (directory) name
+     * Setter for time for which server check result is remembered
      * 
-     * @param path File (directory) path for which you want to get name
-     * @return File (directory) name
+     * @param millis Check time to live in milliseconds
      */
-    private String getNameFromPath(String path) {
-        String[] splitted = path.split("/");
-        return splitted[splitted.length - 1];
+    public static void setCheckTtl(long millis) {
+        checkTtl = millis;
     }
     
     /**
-     * Has this directory (file) another subdirectories (subfiles)?
+     * Returns file list of WFM server, if it changed since the cached file list was loaded
      * 
-     * @param dir Directory
-     * @param files Complete array of files
-     * @return true - this directory has another subdirectories (subfiles), false - this is file or empty directory
+     * The request is conditional on ETag and Last-Modified of cached file list.
+     * When server doesn't support it, hash of the API content is compared.
+     * API content proves that on URL is WFM server, so check API isn't called.
+     * 
+     * @param url WFM server URL
+     * @param cached Previously loaded file list, null if there is none
+     * @return New file list, or the cached file list instance if file list didn't change
+     * @throws Exception when on specified URL isn't WFM server or something went wrong
      */
-    private boolean isDir(String dir, String[] files) {
-        boolean isDir = false; // Set value to false
-        
-        // Iterate complete file list and check if iterated file belongs to controlled directory
-        for (String file : files) { // Iterate complete file list
-            if (!file.equals(dir) && file.startsWith(dir)) { // If isn't iterated controlled directory and if iterated file (directory) starts with controlled path
-                isDir = true; // Set value to false
-                break; // Break cycle
-            }
+    public ServerListing getListing(String url, ServerListing cached) throws Exception {
+        try {
+            return fetchListing(url, cached, ServerMetrics.get(url));
+        } catch (Exception e) {
+            recordError(url);
+            throw e;
         }
-        
-        return isDir; // Return value
     }
     
     /**
-     * Filter complete file list only to files, which belongs to filtered directory
+     * Returns file list of WFM server, if it changed, and records its metrics
      * 
-     * @param dir Directory to filter
-     * @param files Complete file list
-     * @return Filtered array of files
+     * @param url WFM server URL
+     * @param cached Previously loaded file list, null if there is none
+     * @param metrics Metrics of the server
+     * @return New file list, or the cached file list instance if file list didn't change
+     * @throws Exception when on specified URL isn't WFM server or something went wrong
      */
-    private String[] filterDir(String dir, String[] files) {
-        if (dir == null) { // If will be iterated root directory
-            ArrayList<String> filelist = new ArrayList<>(); // Define file array list
-            
-            // Iterate complete file list and fill array list with files, which doesn't belong to any directory
-            for (String file : files) {
-                if (!file.contains("/")) {
-                    filelist.add(file);
-                }
-            }
-            
-            // Put array list to array
-            String[] filearray = new String[filelist.size()]; 
-            for (int i = 0; i < filelist.size(); i++) {
-                filearray[i] = filelist.get(i);
-            }
-            
-            return filearray; // Return array
-        } else {
-            ArrayList<String> filelist = new ArrayList<>(); // Define file array list
-            
-            String[] splittedDir = dir.split("/"); // Split iterated directory path
-            
-            for (String file : files) { // Iterate complete file list
-                String[] splittedFile = file.split("/"); // Split iterated file path
-                
-                // If isn't iterated controlled directory, if iterated file belongs to controlled directory and if file belongs directly to controlled directory
-                if (!file.equals(dir) && file.startsWith(dir) && (splittedDir.length == (splittedFile.length - 1))) {
-                    filelist.add(file); // Add file to file array list
-                }
+    private ServerListing fetchListing(String url, ServerListing cached, ServerMetrics metrics) throws Exception {
+        // Ask only for changed file list
+        ArrayList<String> headers = new ArrayList<>();
+        headers.add("Accept-Encoding");
+        headers.add(HttpTransport.ACCEPT_ENCODING);
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                headers.add("If-None-Match");
+                headers.add(cached.getEtag());
             }
-            
-            // Put array list to array
-            String[] filearray = new String[filelist.size()];
-            for (int i = 0; i < filelist.size(); i++) {
-                filearray[i] = filelist.get(i);
+            if (cached.getLastModified() != null) {
+                headers.add("If-Modified-Since");
+                headers.add(cached.getLastModified());
             }
-            
-            return filearray; // Return array
         }
+        FlightEvents.ListingFetch fetchEvent = new FlightEvents.ListingFetch();
+        fetchEvent.begin();
+        long started = System.nanoTime();
+        HttpResponse<InputStream> response;
+        try {
+            response = HttpTransport.get(url + "?api", headers.toArray(new String[0]));
+            fetchEvent.notModified = response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+        } finally {
+            fetchEvent.end(url, "?api", 0);
+        }
+        metrics.recordListingFetch(System.nanoTime() - started);
+        
+        if (cached != null && response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) { // Didn't file list change?
+            response.body().close();
+            checkServer(url, url); // Empty response doesn't prove it is still WFM server
+            return cached;
+        }
+        checkResponse(response, url + "?api");
+        
+        // Read file list and count hash of API content at the same time
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        String[] entries;
+        AtomicLong received = new AtomicLong();
+        FlightEvents.Extraction extractionEvent = new FlightEvents.Extraction();
+        extractionEvent.begin();
+        started = System.nanoTime();
+        InputStream body = HttpTransport.getBody(response, received);
+        try (InputStream in = new DigestInputStream(body, digest)) {
+            entries = readApiEntries(in);
+            in.transferTo(OutputStream.nullOutputStream()); // Read and hash rest of the page, so the connection can be reused
+            extractionEvent.items = entries.length;
+        } finally {
+            extractionEvent.end(url, "?api", received.get());
+        }
+        metrics.recordParse(System.nanoTime() - started, received.get());
+        CHECKED_SERVERS.put(url, System.currentTimeMillis()); // Server returned API content, so it is WFM server
+        String hash = new BigInteger(1, digest.digest()).toString(16);
+        
+        if (cached != null && hash.equals(cached.getHash())) { // Is API content same as cached?
+            return cached;
+        }
+        
+        return new ServerListing(entries, HttpTransport.getHeader(response, "ETag"), HttpTransport.getHeader(response, "Last-Modified"), hash);
     }
     
     /**
-     * Returns tree node filled with files and directories for specified WFM server
+     * Builds index of file list and records time of building to server metrics
      * 
      * @param url WFM server URL
-     * @param title Title for WFM server
-     * @return Tree node filled with files and directories
-     * @throws Exception when on specified URL isn't WFM server
+     * @param entries File list
+     * @return Index of file list
      */
-    public DefaultMutableTreeNode getFilesNode(String url, String title) throws Exception {
-        DefaultMutableTreeNode files = new DefaultMutableTreeNode(title); // Define tree node
-        
-        if (!getApiContent(url + "?check-api").equals("web-file-manager")) { // Check if API returns "web-file-manager", if not:
-            throw new Exception(title + " isn't WFM server!"); // Throw exception
-        } else {
-            String[] filesArray = getApiContent(url + "?api").split("\n"); // Get file list from WFM URL
-            addChilds(files, filesArray, filterDir(null, filesArray)); // Add files to tree node
+    public ListingIndex buildIndex(String url, String[] entries) {
+        FlightEvents.TreeBuild event = new FlightEvents.TreeBuild();
+        event.begin();
+        long started = System.nanoTime();
+        ListingIndex index = new ListingIndex(entries);
+        ServerMetrics.get(url).recordBuild(System.nanoTime() - started);
+        event.items = index.size();
+        event.end(url, "", 0);
+        return index;
+    }
+    
+    /**
+     * Records failed request to server metrics, if it wasn't canceled
+     * 
+     * @param url WFM server URL
+     */
+    private void recordError(String url) {
+        if (!Thread.currentThread().isInterrupted()) {
+            ServerMetrics.get(url).recordError();
         }
-        
-        return files; // Return tree node
     }
     
     /**
      * Returns API URL content
      * 
      * @param url WFM server URL
-     * @return Content of API URL
+     * @return Content of API URL, entries are separated by new line
      * @throws Exception when something went wrong
      */
     public String getApiContent(String url) throws Exception {
-        URL urlClass = new URL(url); // Define URL class instance
-        Scanner sc = new Scanner(urlClass.openStream()); // Retrieve content of API URL
-        StringBuffer sb = new StringBuffer(); // Define StringBuffer class instance to hold the result
-        
-        // Put whole URL content
-        while(sc.hasNext()) {
-            sb.append(sc.next() + " ");
+        return String.join("\n", getApiEntries(url));
+    }
+    
+    /**
+     * Returns API URL content split to entries
+     * 
+     * @param url WFM server URL
+     * @return Entries of API URL content
+     * @throws Exception when something went wrong
+     */
+    public String[] getApiEntries(String url) throws Exception {
+        return getApiEntries(url, new AtomicLong());
+    }
+    
+    /**
+     * Returns API URL content split to entries and counts received bytes
+     * 
+     * @param url WFM server URL
+     * @param received Counter increased by count of bytes received from server
+     * @return Entries of API URL content
+     * @throws Exception when something went wrong
+     */
+    private String[] getApiEntries(String url, AtomicLong received) throws Exception {
+        HttpResponse<InputStream> response = HttpTransport.get(url, "Accept-Encoding", HttpTransport.ACCEPT_ENCODING);
+        checkResponse(response, url);
+        try (InputStream in = HttpTransport.getBody(response, received)) {
+            String[] entries = readApiEntries(in);
+            in.transferTo(OutputStream.nullOutputStream()); // Read rest of the page, so the connection can be reused
+            return entries;
+        }
+    }
+    
+    /**
+     * Checks if server sent the requested content, closes the response if it didn't
+     * 
+     * @param response Response of server
+     * @param url Requested URL
+     * @throws Exception when server responded with error
+     */
+    private void checkResponse(HttpResponse<InputStream> response, String url) throws Exception {
+        if (response.statusCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+            response.body().close();
+            throw new Exception("Server responded to " + url + " with HTTP " + response.statusCode() + "!");
         }
+    }
+    
+    /**
+     * Reads API content entries from the stream in one pass
+     * 
+     * Skips everything before API div, ends on its closing tag, splits entries
+     * on br tags and leaves out other HTML tags and line breaks.
+     * 
+     * @param in Stream with the page with API content
+     * @return Entries of API content
+     * @throws Exception when the stream doesn't contain API content
+     */
+    String[] readApiEntries(InputStream in) throws Exception {
+        // Define reader with explicit UTF-8 decoder
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        Reader reader = new InputStreamReader(in, decoder);
+        
+        ArrayList<String> entries = new ArrayList<>(); // Define entry list
+        StringBuilder entry = new StringBuilder(); // Define currently read entry
+        StringBuilder tag = new StringBuilder(); // Define currently read tag
         
-        String result = sb.toString(); // Get content from string buffer
+        char[] buffer = new char[8192];
+        int matched = 0; // Count of matched API div start characters
+        boolean inApi = false; // Is reader inside API div?
+        boolean inTag = false; // Is reader inside HTML tag?
+        int read;
+        
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                
+                if (!inApi) { // Look for API div start
+                    if (c == API_START.charAt(matched)) {
+                        matched++;
+                        if (matched == API_START.length()) {
+                            inApi = true;
+                        }
+                    } else {
+                        matched = c == API_START.charAt(0) ? 1 : 0;
+                    }
+                } else if (inTag) { // Read HTML tag name
+                    if (c == '>') {
+                        inTag = false;
+                        String name = tag.toString().trim().toLowerCase();
+                        
+                        if (name.equals("/div")) { // End of API div
+                            addApiEntry(entries, entry);
+                            return entries.toArray(new String[0]);
+                        } else if (name.equals("br") || name.equals("br/") || name.equals("br /")) { // End of entry
+                            addApiEntry(entries, entry);
+                        }
+                    } else {
+                        tag.append(c);
+                    }
+                } else if (c == '<') { // Start of HTML tag
+                    inTag = true;
+                    tag.setLength(0);
+                } else if (c != '\n' && c != '\r') { // Append everything except line breaks to the entry
+                    entry.append(c);
+                }
+            }
+        }
         
-        // Crop content around API content and remove HTML tags
-        result = result.split("<div id=\"wfm-api\">")[1];
-        result = result.split("</div>")[0];
-        result = result.trim();
-        result = result.replaceAll("<br>", "\n");
-        result = result.replaceAll("<[^>]*>", "");
+        if (!inApi) { // Wasn't API div found?
+            throw new Exception("Page doesn't contain WFM API content, it isn't WFM server!");
+        }
         
-        return result; // Return content
+        addApiEntry(entries, entry); // Add last entry of not closed API div
+        return entries.toArray(new String[0]);
+    }
+    
+    /**
+     * Adds read entry to entry list, if it isn't empty, and clears it
+     * 
+     * @param entries Entry list
+     * @param entry Read entry
+     */
+    private void addApiEntry(ArrayList<String> entries, StringBuilder entry) {
+        String value = entry.toString().trim();
+        if (!value.isEmpty()) {
+            entries.add(value);
+        }
+        entry.setLength(0);
     }
     
     /**
@@ -192,7 +384,73 @@ public class ApiParser {
      * @throws Exception when something went wrong
      */
     public boolean isFile(String url, String path) throws Exception {
-        return getApiContent(url + "?api-type=" + path).equals("file");
+        FlightEvents.TypeCheck event = new FlightEvents.TypeCheck();
+        event.begin();
+        AtomicLong received = new AtomicLong();
+        try {
+            event.file = String.join("\n", getApiEntries(url + "?api-type=" + path, received)).equals("file");
+            return event.file;
+        } finally {
+            event.end(url, path, received.get());
+        }
+    }
+    
+    /**
+     * Returns size and version of file on server
+     * 
+     * @param url URL of file on server
+     * @return Size and version of file
+     * @throws Exception when something went wrong
+     */
+    public FileInfo getFileInfo(String url) throws Exception {
+        HttpResponse<Void> response = HttpTransport.head(url);
+        
+        if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            throw new Exception("Information about file " + url + " can't be loaded (HTTP " + response.statusCode() + ")!");
+        }
+        
+        return new FileInfo(HttpTransport.getContentLength(response), HttpTransport.getHeader(response, "Last-Modified"), HttpTransport.getHeader(response, "ETag"), null);
+    }
+    
+    /**
+     * Checks if downloaded file is the same as the file on server
+     * 
+     * Downloaded files get modification time from Last-Modified header, so
+     * the local file is up to date, if its size and modification time are
+     * the same as on server.
+     * 
+     * @param url URL of file on server
+     * @param file Downloaded file
+     * @return true - local file is up to date, false - it is different, missing or it can't be checked
+     */
+    public boolean isFresh(String url, File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        
+        try {
+            FileInfo info = getFileInfo(url);
+            long modified = parseHttpDate(info.getLastModified());
+            return modified >= 0 && info.getSize() == file.length() && modified / 1000 == file.lastModified() / 1000;
+        } catch (Exception e) {
+            return false; // File will be downloaded again
+        }
+    }
+    
+    /**
+     * Returns URL of file on server
+     * 
+     * @param serverUrl WFM server URL
+     * @param path File path
+     * @return File URL with encoded spaces
+     */
+    public static String getFileUrl(String serverUrl, String path) {
+        String fileUrl = serverUrl;
+        if (!fileUrl.endsWith("/")) {
+            fileUrl += "/";
+        }
+        fileUrl += path;
+        return fileUrl.replaceAll(" ", "%20");
     }
     
     /**
@@ -203,22 +461,533 @@ public class ApiParser {
      * @throws Exception when something went wrong
      */
     public void downloadFile(String url, String path) throws Exception {
-        // Define variables
-        ReadableByteChannel readableByteChannel = null;
-        FileOutputStream fileOutputStream = null;
-        FileChannel fileChannel = null;
+        downloadFile(url, path, null);
+    }
+    
+    /**
+     * Download file from URL to specified path and report its progress
+     * 
+     * Large files are downloaded in several parts at the same time, if server
+     * supports it. Other files are downloaded by {@link #downloadStream}.
+     * Download can be canceled by interrupting the thread which runs it, the
+     * partial file is kept and next download continues it.
+     * 
+     * @param url URL of file on server
+     * @param path Path to downloaded file
+     * @param listener Listener notified about transferred bytes, can be null
+     * @return Count of bytes received in this download, without bytes downloaded before it was continued
+     * @throws Exception when something went wrong
+     */
+    public long downloadFile(String url, String path, ProgressListener listener) throws Exception {
+        return downloadFile(url, path, null, listener);
+    }
+    
+    /**
+     * Download file from URL to specified path with limited count of connections and report its progress
+     * 
+     * Parts of file are downloaded at the same time only in connections
+     * reserved by the limit, the first part uses connection of the download.
+     * 
+     * @param url URL of file on server
+     * @param path Path to downloaded file
+     * @param connections Limit of connections to server, null for no limit
+     * @param listener Listener notified about transferred bytes, can be null
+     * @return Count of bytes received in this download, without bytes downloaded before it was continued
+     * @throws Exception when something went wrong
+     */
+    public long downloadFile(String url, String path, ConnectionLimit connections, ProgressListener listener) throws Exception {
+        File part = new File(path + ".part"); // Partially downloaded file
+        File partInfo = new File(path + ".part.info"); // Version of file on server and downloaded parts
+        List<String> info = readPartInfo(partInfo);
+        boolean segmentedPart = part.exists() && info.size() > 2; // Was the file partially downloaded in parts?
+        
+        if (downloadSegments > 1 && !downloadCompression && (segmentedPart || !part.exists())) { // Can the file be downloaded in parts?
+            String[] probe = probeRanges(url);
+            if (probe != null) {
+                long length = Long.parseLong(probe[0]);
+                
+                // Continue parts of the same version of file, or split the file again
+                long[][] segments = segmentedPart && info.get(0).equals(probe[1]) && info.get(1).equals(probe[0]) ? parseSegments(info) : null;
+                if (segments == null && length >= 2 * minSegmentSize) {
+                    part.delete();
+                    segments = splitSegments(length);
+                }
+                
+                if (segments != null) {
+                    long received = downloadSegmented(url, path, length, probe[1], segments, connections, listener);
+                    if (received >= 0) {
+                        setLastModified(new File(path), probe[2]);
+                        return received;
+                    }
+                    segmentedPart = false; // Partial file was deleted
+                }
+            }
+        }
+        
+        if (segmentedPart) { // Continue only the beginning of file downloaded in parts
+            keepFirstSegments(part, partInfo, info);
+        }
+        return downloadStream(url, path, listener); // Download file in one stream
+    }
+    
+    /**
+     * Download file from URL to specified path in one stream and report its progress
+     * 
+     * File is downloaded to path with ".part" suffix and moved to the path when
+     * it is complete. Download can be canceled by interrupting the thread which
+     * runs it, the partial file is kept and next download of the same file
+     * continues from its end, if the file on server didn't change.
+     * 
+     * @param url URL of file on server
+     * @param path Path to downloaded file
+     * @param listener Listener notified about transferred bytes, can be null
+     * @return Count of bytes received in this download
+     * @throws Exception when something went wrong
+     */
+    private long downloadStream(String url, String path, ProgressListener listener) throws Exception {
+        File part = new File(path + ".part"); // Partially downloaded file
+        File partInfo = new File(path + ".part.info"); // Version of file on server, which is partially downloaded
+        
+        // Ask only for the rest of the file, if part of the same version is already downloaded
+        long offset = 0;
+        String[] headers = downloadCompression ? new String[] {"Accept-Encoding", HttpTransport.ACCEPT_ENCODING} : new String[0];
+        List<String> info = readPartInfo(partInfo);
+        if (part.exists() && part.length() > 0 && !info.isEmpty()) {
+            String validator = info.get(0).trim();
+            if (!validator.isEmpty()) {
+                offset = part.length();
+                headers = new String[] {"Range", "bytes=" + offset + "-", "If-Range", validator};
+            }
+        }
+        
+        HttpResponse<InputStream> response = HttpTransport.get(url, headers);
+        int responseCode = response.statusCode();
+        if (offset > 0 && responseCode == 416) { // Is partial file already complete or longer than the file?
+            response.body().close();
+            part.delete();
+            partInfo.delete();
+            return downloadStream(url, path, listener); // Download whole file again
+        }
+        checkResponse(response, url);
+        if (responseCode != HttpURLConnection.HTTP_PARTIAL) { // Server sends the whole file
+            offset = 0;
+        }
+        
+        // Remember version of the file, so the download can be resumed later
+        String validator = HttpTransport.getHeader(response, "ETag");
+        if (validator == null) {
+            validator = HttpTransport.getHeader(response, "Last-Modified");
+        }
+        Files.write(partInfo.toPath(), (validator == null ? "" : validator).getBytes(StandardCharsets.UTF_8));
+        String lastModified = HttpTransport.getHeader(response, "Last-Modified");
+        
+        String encoding = HttpTransport.getHeader(response, "Content-Encoding");
+        boolean encoded = encoding != null && !encoding.trim().isEmpty() && !encoding.trim().equalsIgnoreCase("identity");
+        long length = encoded ? -1 : HttpTransport.getContentLength(response); // Length of compressed file isn't length of the file
+        long total = length < 0 ? -1 : offset + length;
+        
+        // Try download file in chunks, so progress can be reported
+        long position = offset;
+        try (ReadableByteChannel readableByteChannel = Channels.newChannel(HttpTransport.getBody(response));
+                FileChannel fileChannel = FileChannel.open(part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            fileChannel.truncate(offset); // Remove everything after the continued position
+            
+            long count;
+            while ((count = fileChannel.transferFrom(readableByteChannel, position, TRANSFER_CHUNK)) > 0) {
+                position += count;
+                
+                if (listener != null) {
+                    listener.progress(position, total);
+                }
+                
+                if (Thread.currentThread().isInterrupted()) { // Was download canceled?
+                    throw new InterruptedIOException("Download was canceled!");
+                }
+            }
+            
+            if (total >= 0 && position < total) { // Was connection closed before the end of file?
+                throw new IOException("Connection was closed before the whole file was downloaded!");
+            }
+        }
+        
+        // Move complete file to its path
+        Files.move(part.toPath(), new File(path).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        partInfo.delete();
+        setLastModified(new File(path), lastModified);
+        return position - offset;
+    }
+    
+    /**
+     * Sets modification time of downloaded file to Last-Modified header
+     * 
+     * @param file Downloaded file
+     * @param lastModified Last-Modified header, can be null
+     */
+    private static void setLastModified(File file, String lastModified) {
+        long modified = parseHttpDate(lastModified);
+        if (modified >= 0) {
+            file.setLastModified(modified);
+        }
+    }
+    
+    /**
+     * Parses date from HTTP header
+     * 
+     * @param date Date from HTTP header, can be null
+     * @return Time in milliseconds, -1 if date is missing or invalid
+     */
+    private static long parseHttpDate(String date) {
+        if (date == null) {
+            return -1;
+        }
         
-        // Try download file
         try {
-            readableByteChannel = Channels.newChannel(new URL(url).openStream());
-            fileOutputStream = new FileOutputStream(path);
-            fileChannel = fileOutputStream.getChannel();
-            fileOutputStream.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Asks server for file size and checks if it supports downloading parts of the file
+     * 
+     * Parts are downloaded only with strong ETag or Last-Modified, so all
+     * parts are from the same version of the file.
+     * 
+     * @param url URL of file on server
+     * @return File size, validator of file version and Last-Modified (null if server didn't send it), null if server doesn't support parts
+     */
+    private String[] probeRanges(String url) {
+        try {
+            HttpResponse<Void> response = HttpTransport.head(url);
+            if (response.statusCode() != HttpURLConnection.HTTP_OK
+                    || !"bytes".equals(HttpTransport.getHeader(response, "Accept-Ranges"))
+                    || HttpTransport.getContentLength(response) < 0) {
+                return null;
+            }
+            
+            String etag = HttpTransport.getHeader(response, "ETag");
+            String lastModified = HttpTransport.getHeader(response, "Last-Modified");
+            String validator = etag != null && !etag.startsWith("W/") ? etag : lastModified; // Weak ETag can't be used with If-Range
+            if (validator == null) { // Parts could be from different versions of the file
+                return null;
+            }
+            return new String[] {String.valueOf(HttpTransport.getContentLength(response)), validator, lastModified};
+        } catch (Exception e) {
+            return null; // File will be downloaded in one stream
+        }
+    }
+    
+    /**
+     * Splits file to parts which are not smaller than minimal part size
+     * 
+     * @param length File size
+     * @return Parts with positions of their first byte, last byte and first not downloaded byte
+     */
+    private static long[][] splitSegments(long length) {
+        int count = (int) Math.min(downloadSegments, length / minSegmentSize);
+        long[][] segments = new long[count][];
+        for (int i = 0; i < count; i++) {
+            long start = length * i / count;
+            segments[i] = new long[] {start, length * (i + 1) / count - 1, start};
+        }
+        return segments;
+    }
+    
+    /**
+     * Reads version of partially downloaded file and its downloaded parts
+     * 
+     * @param partInfo File with information about partial file
+     * @return Lines of the file, empty if it doesn't exist
+     */
+    private static List<String> readPartInfo(File partInfo) {
+        try {
+            return partInfo.exists() ? Files.readAllLines(partInfo.toPath(), StandardCharsets.UTF_8) : new ArrayList<>();
+        } catch (IOException e) {
+            return new ArrayList<>(); // File will be downloaded again
+        }
+    }
+    
+    /**
+     * Parses parts of partially downloaded file
+     * 
+     * Information contains validator of file version, file size and for
+     * every part positions of its first byte, last byte and first not
+     * downloaded byte.
+     * 
+     * @param info Lines of file with information about partial file
+     * @return Parts as returned by {@link #splitSegments}, null if information is invalid
+     */
+    private static long[][] parseSegments(List<String> info) {
+        try {
+            long[][] segments = new long[info.size() - 2][];
+            long start = 0;
+            for (int i = 0; i < segments.length; i++) {
+                String[] values = info.get(i + 2).trim().split(" ");
+                long[] segment = new long[] {Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2])};
+                if (segment[0] != start || segment[1] < segment[0] || segment[2] < segment[0] || segment[2] > segment[1] + 1) { // Parts must follow each other
+                    return null;
+                }
+                segments[i] = segment;
+                start = segment[1] + 1;
+            }
+            return start == Long.parseLong(info.get(1).trim()) ? segments : null;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Saves version of partially downloaded file and its downloaded parts
+     * 
+     * @param partInfo File with information about partial file
+     * @param validator Validator of file version
+     * @param length File size
+     * @param segments Parts of the file
+     * @param positions Positions of the first not downloaded byte of parts
+     * @throws IOException when file can't be written
+     */
+    private static void writeSegments(File partInfo, String validator, long length, long[][] segments, AtomicLongArray positions) throws IOException {
+        StringBuilder info = new StringBuilder(validator + "\n" + length + "\n");
+        for (int i = 0; i < segments.length; i++) {
+            info.append(segments[i][0]).append(' ').append(segments[i][1]).append(' ').append(positions.get(i)).append('\n');
+        }
+        Files.write(partInfo.toPath(), info.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Keeps only downloaded beginning of file downloaded in parts, so it can be continued in one stream
+     * 
+     * @param part Partially downloaded file
+     * @param partInfo File with information about partial file
+     * @param info Lines of file with information about partial file
+     * @throws IOException when partial file can't be changed
+     */
+    private static void keepFirstSegments(File part, File partInfo, List<String> info) throws IOException {
+        long[][] segments = parseSegments(info);
+        long downloaded = 0;
+        if (segments != null) {
+            for (long[] segment : segments) {
+                downloaded = segment[2];
+                if (segment[2] <= segment[1]) { // Is there a gap after this part?
+                    break;
+                }
+            }
+        }
+        
+        if (downloaded > 0) {
+            try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+                file.setLength(downloaded);
+            }
+            Files.write(partInfo.toPath(), info.get(0).getBytes(StandardCharsets.UTF_8));
+        } else {
+            part.delete();
+            partInfo.delete();
+        }
+    }
+    
+    /**
+     * Download file from URL to specified path in several parts at the same time
+     * 
+     * Every part is written directly at its position to the file, which is
+     * created with the final size. Downloaded parts are saved with the file
+     * version to file with ".part.info" suffix, so canceled download continues
+     * only the missing parts. If server sends whole file instead of part,
+     * partial file is deleted and -1 is returned.
+     * 
+     * @param url URL of file on server
+     * @param path Path to downloaded file
+     * @param length File size
+     * @param validator ETag or Last-Modified of file, parts are downloaded only from this version of file
+     * @param segments Parts as returned by {@link #splitSegments}
+     * @param connections Limit of connections to server, null for no limit
+     * @param listener Listener notified about transferred bytes, can be null
+     * @return Count of bytes received in this download, -1 if server doesn't support parts
+     * @throws Exception when something went wrong
+     */
+    private long downloadSegmented(String url, String path, long length, String validator, long[][] segments, ConnectionLimit connections, ProgressListener listener)
+            throws Exception {
+        File part = new File(path + ".part"); // Partially downloaded file
+        File partInfo = new File(path + ".part.info"); // Version of file on server and downloaded parts
+        
+        // Find parts which are not downloaded yet
+        long downloaded = 0;
+        AtomicLongArray positions = new AtomicLongArray(segments.length);
+        ArrayList<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < segments.length; i++) {
+            positions.set(i, segments[i][2]);
+            downloaded += segments[i][2] - segments[i][0];
+            if (segments[i][2] <= segments[i][1]) {
+                missing.add(i);
+            }
+        }
+        
+        // Download parts in this connection and in connections, which are free
+        int wanted = Math.max(0, missing.size() - 1);
+        int reserved = connections == null ? wanted : connections.acquire(wanted);
+        
+        AtomicLong transferred = new AtomicLong(downloaded);
+        ExecutorService executor = Executors.newFixedThreadPool(1 + reserved);
+        boolean ranged = true;
+        boolean complete = false;
+        
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            file.setLength(length); // Create file with final size
+            writeSegments(partInfo, validator, length, segments, positions);
+            FileChannel fileChannel = file.getChannel();
+            
+            // Download missing parts, at the same time as many as there are connections
+            ArrayList<Future<Boolean>> downloads = new ArrayList<>();
+            for (int i : missing) {
+                downloads.add(executor.submit(() -> downloadSegment(url, validator, fileChannel, i, segments[i][1], positions, transferred, length, listener)));
+            }
+            
+            // Wait for all parts
+            for (Future<Boolean> download : downloads) {
+                ranged &= download.get();
+            }
+            complete = ranged;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Download was canceled!");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
         } finally {
-            // Close all
-            if (readableByteChannel != null) readableByteChannel.close();
-            if (fileOutputStream != null) fileOutputStream.close();
-            if (fileChannel != null) fileChannel.close();
+            executor.shutdownNow(); // Stop other parts if something went wrong
+            if (connections != null) {
+                connections.release(reserved);
+            }
+            
+            if (!ranged) { // Parts of this version of file can't be downloaded anymore
+                part.delete();
+                partInfo.delete();
+            } else if (!complete) { // Save downloaded parts, so the download can be continued
+                try {
+                    writeSegments(partInfo, validator, length, segments, positions);
+                } catch (IOException e) {
+                    // Information saved before the download is still valid, only fewer bytes are continued
+                }
+            }
+        }
+        
+        if (!complete) {
+            return -1;
+        }
+        
+        // Move complete file to its path
+        Files.move(part.toPath(), new File(path).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        partInfo.delete();
+        return transferred.get() - downloaded;
+    }
+    
+    /**
+     * Downloads rest of one part of file and writes it at its position to the file
+     * 
+     * @param url URL of file on server
+     * @param validator ETag or Last-Modified of file
+     * @param fileChannel Channel of downloaded file
+     * @param index Index of part
+     * @param end Position of the last byte of part
+     * @param positions Positions of the first not downloaded byte of parts, updated after every write
+     * @param transferred Count of already transferred bytes of all parts
+     * @param total File size
+     * @param listener Listener notified about transferred bytes, can be null
+     * @return true - part was downloaded, false - server sent other content than this part
+     * @throws Exception when something went wrong
+     */
+    private boolean downloadSegment(String url, String validator, FileChannel fileChannel, int index, long end, AtomicLongArray positions, AtomicLong transferred,
+            long total, ProgressListener listener) throws Exception {
+        long position = positions.get(index);
+        HttpResponse<InputStream> response = HttpTransport.get(url, "Range", "bytes=" + position + "-" + end, "If-Range", validator);
+        
+        if (response.statusCode() != HttpURLConnection.HTTP_PARTIAL) { // Did server ignore range or did the file change?
+            response.body().close();
+            return false;
+        }
+        
+        try (InputStream in = HttpTransport.getBody(response)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            
+            while (position <= end && (read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position + 1))) != -1) {
+                // Write read bytes at their position
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                while (byteBuffer.hasRemaining()) {
+                    position += fileChannel.write(byteBuffer, position);
+                }
+                positions.set(index, position);
+                
+                long done = transferred.addAndGet(read);
+                if (listener != null) {
+                    listener.progress(done, total);
+                }
+                
+                if (Thread.currentThread().isInterrupted()) { // Was download canceled?
+                    throw new InterruptedIOException("Download was canceled!");
+                }
+            }
+            
+            if (position <= end) { // Was connection closed before the end of part?
+                throw new IOException("Connection was closed before the whole file was downloaded!");
+            }
         }
+        
+        return true;
+    }
+    
+    /**
+     * Setter for count of parts downloaded at the same time
+     * 
+     * @param segments Maximal count of parts of one file, 1 downloads every file in one stream
+     * @param minSize Minimal size of one part in bytes
+     */
+    public static void setDownloadSegments(int segments, long minSize) {
+        downloadSegments = segments;
+        minSegmentSize = minSize;
+    }
+    
+    /**
+     * Setter for compression of downloaded files
+     * 
+     * Compressed files are downloaded in one stream, because parts of
+     * compressed content can't be requested. Continued downloads always ask
+     * for uncompressed rest of the file.
+     * 
+     * @param compression true - ask server for compressed files, false - download files as they are
+     */
+    public static void setDownloadCompression(boolean compression) {
+        downloadCompression = compression;
+    }
+    
+    /**
+     * Limit of connections to one server used by downloads
+     */
+    public interface ConnectionLimit {
+        /**
+         * Reserves free connections for parts of file
+         * 
+         * @param count Count of wanted connections
+         * @return Count of reserved connections, from 0 to count
+         */
+        int acquire(int count);
+        
+        /**
+         * Frees connections reserved for parts of file
+         * 
+         * @param count Count of reserved connections
+         */
+        void release(int count);
+    }
+    
+    /**
+     * Listener for download progress
+     */
+    public interface ProgressListener {
+        /**
+         * Called after every transferred chunk
+         * 
+         * @param transferred Count of already transferred bytes
+         * @param total Size of the whole file in bytes, -1 if it is unknown
+         */
+        void progress(long transferred, long total);
     }
 }
@@ -0,0 +1,243 @@
+/* DiagnosticsJDialog.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * JDialog showing performance metrics of servers
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class DiagnosticsJDialog extends javax.swing.JDialog {
+    private static final String[] COLUMNS = {"Server", "Loads", "Fetch p50 / p95", "Parse p50 / p95", "Build p50", "File lists",
+        "Downloaded", "Download speed p50", "Errors"};
+    
+    private List<ServerMetrics> servers;
+    private AbstractTableModel model;
+    private Timer timer;
+    
+    /**
+     * Diagnostics JDialog constructor method
+     */
+    public DiagnosticsJDialog(java.awt.Frame parent, boolean modal) {
+        super(parent, modal);
+        initComponents();
+        setLocationRelativeTo(parent);
+        servers = new ArrayList<>();
+        
+        // Set JTable model with server metrics
+        model = new AbstractTableModel() {
+            @Override
+            public int getRowCount() {
+                return servers.size();
+            }
+            
+            @Override
+            public int getColumnCount() {
+                return COLUMNS.length;
+            }
+            
+            @Override
+            public String getColumnName(int column) {
+                return COLUMNS[column];
+            }
+            
+            @Override
+            public Object getValueAt(int row, int column) {
+                ServerMetrics metrics = servers.get(row);
+                switch (column) {
+                    case 0:
+                        return metrics.getServerUrl();
+                    case 1:
+                        return metrics.getListingFetchMicros().getCount();
+                    case 2:
+                        return formatMillis(metrics.getListingFetchMicros().getP50()) + " / " + formatMillis(metrics.getListingFetchMicros().getP95());
+                    case 3:
+                        return formatMillis(metrics.getParseMicros().getP50()) + " / " + formatMillis(metrics.getParseMicros().getP95());
+                    case 4:
+                        return formatMillis(metrics.getBuildMicros().getP50());
+                    case 5:
+                        return formatBytes(metrics.getListingBytes());
+                    case 6:
+                        return formatBytes(metrics.getDownloadBytes());
+                    case 7:
+                        return formatBytes(metrics.getDownloadKilobytesPerSecond().getP50() * 1024) + "/s";
+                    default:
+                        return metrics.getErrors();
+                }
+            }
+        };
+        metricsJTable.setModel(model);
+        
+        // Refresh metrics while the dialog is shown
+        timer = new Timer(1000, evt -> refresh());
+        refresh();
+        timer.start();
+    }
+    
+    /**
+     * Loads metrics of all servers
+     */
+    private void refresh() {
+        int count = servers.size();
+        
+        servers = ServerMetrics.getAll();
+        
+        if (count == servers.size() && count > 0) { // Update values only, so selection is kept
+            model.fireTableRowsUpdated(0, servers.size() - 1);
+        } else {
+            model.fireTableDataChanged();
+        }
+    }
+    
+    /**
+     * Formats duration
+     * 
+     * @param micros Duration in microseconds
+     * @return Duration in milliseconds
+     */
+    private static String formatMillis(long micros) {
+        return String.format("%.1f ms", micros / 1000.0);
+    }
+    
+    /**
+     * Formats count of bytes
+     * 
+     * @param bytes Count of bytes
+     * @return Count of bytes with unit
+     */
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KiB", bytes / 1024.0);
+        }
+        return String.format("%.1f MiB", bytes / 1024.0 / 1024.0);
+    }
+    
+    /**
+     * This method is called from within the constructor to initialize the form.
+     * WARNING: Do NOT modify this code. The content of this method is always
+     * regenerated by the Form Editor.
+     */
+    @SuppressWarnings("unchecked")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+    
+        jScrollPane1 = new javax.swing.JScrollPane();
+        metricsJTable = new javax.swing.JTable();
+        resetJButton = new javax.swing.JButton();
+        closeJButton = new javax.swing.JButton();
+        
+        setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+        setTitle("Diagnostics");
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            public void windowClosed(java.awt.event.WindowEvent evt) {
+                formWindowClosed(evt);
+            }
+        });
+        
+        metricsJTable.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        jScrollPane1.setViewportView(metricsJTable);
+        
+        resetJButton.setText("Reset");
+        resetJButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                resetJButtonActionPerformed(evt);
+            }
+        });
+        
+        closeJButton.setText("Close");
+        closeJButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                closeJButtonActionPerformed(evt);
+            }
+        });
+        
+        javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
+        getContentPane().setLayout(layout);
+        layout.setHorizontalGroup(
+            layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(layout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 876, Short.MAX_VALUE)
+                    .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, layout.createSequentialGroup()
+                        .addGap(0, 0, Short.MAX_VALUE)
+                        .addComponent(resetJButton)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(closeJButton)))
+                .addContainerGap())
+        );
+        layout.setVerticalGroup(
+            layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, layout.createSequentialGroup()
+                .addContainerGap()
+                .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 250, Short.MAX_VALUE)
+                .addGap(18, 18, 18)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(resetJButton)
+                    .addComponent(closeJButton))
+                .addContainerGap())
+        );
+        
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+    
+    /**
+     * Reset button on click action
+     * 
+     * @param evt Action event
+     */
+    private void resetJButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_resetJButtonActionPerformed
+        for (ServerMetrics metrics : servers) { // Clear metrics of all servers
+            metrics.reset();
+        }
+        refresh();
+    }//GEN-LAST:event_resetJButtonActionPerformed
+    
+    /**
+     * Close button on click action
+     * 
+     * @param evt Action event
+     */
+    private void closeJButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_closeJButtonActionPerformed
+        dispose(); // Close dialog
+    }//GEN-LAST:event_closeJButtonActionPerformed
+    
+    /**
+     * Dialog closed action
+     * 
+     * @param evt Window event
+     */
+    private void formWindowClosed(java.awt.event.WindowEvent evt) {//GEN-FIRST:event_formWindowClosed
+        timer.stop(); // Stop refreshing metrics
+    }//GEN-LAST:event_formWindowClosed
+    
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton closeJButton;
+    private javax.swing.JScrollPane jScrollPane1;
+    private javax.swing.JTable metricsJTable;
+    private javax.swing.JButton resetJButton;
+    // End of variables declaration//GEN-END:variables
+}
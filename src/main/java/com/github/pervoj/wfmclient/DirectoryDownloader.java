@@ -0,0 +1,147 @@
+/* DirectoryDownloader.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for downloading whole directories from already loaded file list
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class DirectoryDownloader {
+    private DownloadQueue queue;
+    
+    /**
+     * Directory downloader constructor method
+     * 
+     * @param queue Download queue, which downloads the files
+     */
+    public DirectoryDownloader(DownloadQueue queue) {
+        this.queue = queue;
+    }
+    
+    /**
+     * Adds file or all files of directory and its subdirectories to download queue
+     * 
+     * Directories are walked from the index, every local directory is created
+     * once before its files are added and files start downloading while the
+     * rest of the tree is still walked. Listed paths leading outside of the
+     * local directory (e.g. with "..") are skipped.
+     * 
+     * @param index Index of server file list
+     * @param serverName Server name
+     * @param serverUrl WFM server URL
+     * @param path File (directory) path, empty string for whole server
+     * @param serverDir Local directory for files of this server
+     * @return Added downloads
+     * @throws Exception when local directory can't be created or the path leads outside of it
+     */
+    public List<DownloadJob> download(ListingIndex index, String serverName, String serverUrl, String path, File serverDir) throws Exception {
+        ArrayList<DownloadJob> jobs = new ArrayList<>();
+        
+        if (getLocalFile(serverDir, path) == null) {
+            throw new Exception("Path " + path + " leads outside of download directory!");
+        }
+        
+        if (index.getType(path) != ListingIndex.Type.DIRECTORY) { // Is it single file?
+            File local = getLocalFile(serverDir, path);
+            createDir(local.getParentFile());
+            jobs.add(addFile(index, serverName, serverUrl, path, local));
+            return jobs;
+        }
+        
+        // Walk directory tree, directory by directory
+        ArrayDeque<String> directories = new ArrayDeque<>();
+        directories.add(path);
+        while (!directories.isEmpty()) {
+            String directory = directories.poll();
+            createDir(getLocalFile(serverDir, directory)); // Create local directory once for all its files
+            
+            for (String child : index.getChildren(directory)) {
+                File local = getLocalFile(serverDir, child);
+                if (local == null) { // Don't let server write outside of download directory
+                    continue;
+                }
+                
+                if (index.getType(child) == ListingIndex.Type.DIRECTORY) {
+                    directories.add(child);
+                } else {
+                    jobs.add(addFile(index, serverName, serverUrl, child, local));
+                }
+            }
+        }
+        
+        return jobs;
+    }
+    
+    /**
+     * Adds one file to download queue
+     * 
+     * @param index Index of server file list
+     * @param serverName Server name
+     * @param serverUrl WFM server URL
+     * @param path File path
+     * @param local Local file
+     * @return Added download
+     */
+    private DownloadJob addFile(ListingIndex index, String serverName, String serverUrl, String path, File local) {
+        return queue.add(new DownloadJob(serverName, serverUrl, path, local, DownloadJob.Priority.BULK, index, null));
+    }
+    
+    /**
+     * Creates local directory, if it doesn't exist
+     * 
+     * @param dir Local directory
+     * @throws Exception when directory can't be created
+     */
+    private void createDir(File dir) throws Exception {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new Exception("Directory " + dir.getAbsolutePath() + " can't be created!");
+        }
+    }
+    
+    /**
+     * Returns local file for path on server
+     * 
+     * Paths come from server file list, so paths leading outside of the
+     * local directory (e.g. with ".." or through symbolic link) aren't
+     * accepted.
+     * 
+     * @param serverDir Local directory for files of this server
+     * @param path File (directory) path on server
+     * @return Local file, null if the path leads outside of the local directory
+     * @throws IOException when path can't be resolved
+     */
+    static File getLocalFile(File serverDir, String path) throws IOException {
+        if (path.isEmpty()) {
+            return serverDir;
+        }
+        
+        File file = new File(serverDir, path.replace("/", File.separator));
+        Path dir = serverDir.getCanonicalFile().toPath();
+        Path resolved = file.getCanonicalFile().toPath();
+        return resolved.startsWith(dir) && !resolved.equals(dir) ? file : null;
+    }
+}
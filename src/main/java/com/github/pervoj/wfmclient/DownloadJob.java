@@ -0,0 +1,339 @@
+/* DownloadJob.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+/**
+ * One file download in download queue
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class DownloadJob {
+    /**
+     * State of download
+     */
+    public enum State {
+        /** Download waits in queue */
+        QUEUED,
+        /** File is being downloaded */
+        ACTIVE,
+        /** File was downloaded */
+        FINISHED,
+        /** Path on server isn't file, nothing was downloaded */
+        SKIPPED,
+        /** Download failed */
+        FAILED,
+        /** Download was canceled */
+        CANCELED
+    }
+    
+    /**
+     * Priority of download, downloads with higher priority are started first
+     */
+    public enum Priority {
+        /** File opened by user, which is waited for, up to date local copy isn't downloaded again */
+        OPEN,
+        /** File downloaded together with many other files */
+        BULK
+    }
+    
+    private String serverName;
+    private String serverUrl;
+    private String filePath;
+    private File downloadedFile;
+    private Priority priority;
+    private ListingIndex listing;
+    private FinishedListener onFinished;
+    private long sequence;
+    private volatile State state;
+    private volatile long transferred;
+    private volatile long total;
+    private volatile Exception error;
+    private Future<?> future;
+    private CountDownLatch done;
+    
+    /**
+     * Download job constructor method
+     * 
+     * @param serverName Server name
+     * @param serverUrl WFM server URL
+     * @param filePath File path on server
+     * @param downloadedFile File for downloaded file
+     * @param priority Priority of download
+     * @param listing File list of server, unknown type of the path is asked and remembered in it, null if the path is file
+     * @param onFinished Called in background after the file was downloaded, can be null
+     */
+    public DownloadJob(String serverName, String serverUrl, String filePath, File downloadedFile, Priority priority, ListingIndex listing, FinishedListener onFinished) {
+        this.serverName = serverName;
+        this.serverUrl = serverUrl;
+        this.filePath = filePath;
+        this.downloadedFile = downloadedFile;
+        this.priority = priority;
+        this.listing = listing;
+        this.onFinished = onFinished;
+        state = State.QUEUED;
+        total = -1;
+        done = new CountDownLatch(1);
+    }
+    
+    /**
+     * Getter for server name
+     * 
+     * @return Server name
+     */
+    public String getServerName() {
+        return serverName;
+    }
+    
+    /**
+     * Getter for WFM server URL
+     * 
+     * @return WFM server URL
+     */
+    public String getServerUrl() {
+        return serverUrl;
+    }
+    
+    /**
+     * Getter for file path on server
+     * 
+     * @return File path on server
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+    
+    /**
+     * Getter for file for downloaded file
+     * 
+     * @return File for downloaded file
+     */
+    public File getDownloadedFile() {
+        return downloadedFile;
+    }
+    
+    /**
+     * Getter for priority of download
+     * 
+     * @return Priority of download
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+    
+    /**
+     * Getter for state of download
+     * 
+     * @return State of download
+     */
+    public State getState() {
+        return state;
+    }
+    
+    /**
+     * Is download finished, failed, skipped or canceled?
+     * 
+     * @return true - download won't continue, false - download waits or runs
+     */
+    public boolean isDone() {
+        return state != State.QUEUED && state != State.ACTIVE;
+    }
+    
+    /**
+     * Waits until download is finished, failed, skipped or canceled
+     * 
+     * @throws InterruptedException when waiting thread is interrupted
+     */
+    public void waitFor() throws InterruptedException {
+        done.await();
+    }
+    
+    /**
+     * Getter for count of transferred bytes
+     * 
+     * @return Count of transferred bytes
+     */
+    public long getTransferred() {
+        return transferred;
+    }
+    
+    /**
+     * Getter for file size
+     * 
+     * @return File size in bytes, -1 if it isn't known
+     */
+    public long getTotal() {
+        return total;
+    }
+    
+    /**
+     * Returns download progress
+     * 
+     * @return Progress in percents, 0 if file size isn't known
+     */
+    public int getProgress() {
+        if (state == State.FINISHED) {
+            return 100;
+        }
+        return total > 0 ? (int) Math.min(100, transferred * 100 / total) : 0;
+    }
+    
+    /**
+     * Getter for error of failed download
+     * 
+     * @return Error, null if download didn't fail
+     */
+    public Exception getError() {
+        return error;
+    }
+    
+    /**
+     * Downloads the file, called by download queue
+     * 
+     * @param connections Limit of connections to the server for parts of the file
+     * @throws Exception when something went wrong
+     */
+    void run(ApiParser.ConnectionLimit connections) throws Exception {
+        if (priority == Priority.OPEN && new ApiParser().isFresh(ApiParser.getFileUrl(serverUrl, filePath), downloadedFile)) { // Is opened file already downloaded?
+            if (onFinished != null && state != State.CANCELED) {
+                onFinished.finished(this);
+            }
+            finish(State.FINISHED, null);
+            return;
+        }
+        
+        if (listing != null) { // Check if the path is file, server is asked only once for every file list
+            ListingIndex.Type type = listing.getType(filePath);
+            if (type == ListingIndex.Type.UNKNOWN) {
+                type = new ApiParser().isFile(serverUrl, filePath.replaceAll(" ", "%20")) ? ListingIndex.Type.FILE : ListingIndex.Type.DIRECTORY;
+                listing.setType(filePath, type);
+            }
+            if (type == ListingIndex.Type.DIRECTORY) {
+                finish(State.SKIPPED, null);
+                return;
+            }
+        }
+        
+        // Create parent directories for downloaded file, if don't exist
+        if (!downloadedFile.getParentFile().exists()) {
+            downloadedFile.getParentFile().mkdirs();
+        }
+        
+        // Download the file, canceled download is continued next time
+        FlightEvents.Download event = new FlightEvents.Download();
+        event.begin();
+        long started = System.nanoTime();
+        long received = 0; // Bytes downloaded before download was continued aren't counted
+        try {
+            received = new ApiParser().downloadFile(ApiParser.getFileUrl(serverUrl, filePath), downloadedFile.getAbsolutePath(), connections, (transferred, total) -> {
+                this.transferred = transferred;
+                this.total = total;
+            });
+        } finally {
+            event.end(serverUrl, filePath, received);
+        }
+        ServerMetrics.get(serverUrl).recordDownload(System.nanoTime() - started, received);
+        
+        if (onFinished != null && state != State.CANCELED) {
+            onFinished.finished(this);
+        }
+        finish(State.FINISHED, null);
+    }
+    
+    /**
+     * Setter for state of download, called by download queue
+     * 
+     * @param state State of download
+     */
+    synchronized void setState(State state) {
+        this.state = state;
+        if (isDone()) {
+            done.countDown();
+        }
+    }
+    
+    /**
+     * Ends running download, canceled download stays canceled
+     * 
+     * @param state Final state of download
+     * @param error Error of failed download, null if download didn't fail
+     * @return true - download was ended with the state, false - download was canceled before
+     */
+    synchronized boolean finish(State state, Exception error) {
+        if (this.state == State.CANCELED) {
+            return false;
+        }
+        
+        this.error = error;
+        setState(state);
+        return true;
+    }
+    
+    /**
+     * Getter for order in which the download was added to queue
+     * 
+     * @return Order of download
+     */
+    long getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * Setter for order in which the download was added to queue
+     * 
+     * @param sequence Order of download
+     */
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+    
+    /**
+     * Getter for running download task
+     * 
+     * @return Running download task, null if download doesn't run
+     */
+    Future<?> getFuture() {
+        return future;
+    }
+    
+    /**
+     * Setter for running download task
+     * 
+     * @param future Running download task
+     */
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+    
+    /**
+     * Listener called after the file was downloaded
+     */
+    public interface FinishedListener {
+        /**
+         * Called in background after the file was downloaded
+         * 
+         * @param job Finished download
+         * @throws Exception when something went wrong, download is marked as failed
+         */
+        void finished(DownloadJob job) throws Exception;
+    }
+}
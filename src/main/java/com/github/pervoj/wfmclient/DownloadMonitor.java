@@ -0,0 +1,85 @@
+/* DownloadMonitor.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.awt.Component;
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.Timer;
+
+/**
+ * Progress dialog for download from download queue, which the user waits for
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class DownloadMonitor {
+    private Component parent;
+    private DownloadQueue queue;
+    private DownloadJob job;
+    private ProgressMonitor monitor;
+    private Timer timer;
+    
+    /**
+     * Download monitor constructor method, must be called on event dispatch thread
+     * 
+     * @param parent Component for progress and error dialogs
+     * @param queue Download queue with the download
+     * @param job Watched download
+     */
+    public DownloadMonitor(Component parent, DownloadQueue queue, DownloadJob job) {
+        this.parent = parent;
+        this.queue = queue;
+        this.job = job;
+        
+        // Define progress dialog, it is shown only for downloads which take some time
+        monitor = new ProgressMonitor(parent, "Downloading " + job.getDownloadedFile().getName(), null, 0, 100);
+        
+        // Check the download regularly, even when no data come
+        timer = new Timer(200, evt -> update());
+    }
+    
+    /**
+     * Starts watching the download
+     */
+    public void start() {
+        timer.start();
+    }
+    
+    /**
+     * Shows download progress, cancels download when progress dialog is canceled and shows error if download failed
+     */
+    private void update() {
+        if (monitor.isCanceled()) { // Was progress dialog canceled?
+            queue.cancel(job);
+        }
+        
+        if (!job.isDone()) { // Is download still waiting or running?
+            monitor.setProgress(job.getProgress());
+            return;
+        }
+        
+        timer.stop();
+        monitor.close();
+        
+        if (job.getState() == DownloadJob.State.FAILED) {
+            // Show error if something went wrong
+            JOptionPane.showMessageDialog(parent, job.getError().getMessage(), "Error downloading file", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
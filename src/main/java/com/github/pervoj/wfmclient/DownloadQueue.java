@@ -0,0 +1,212 @@
+/* DownloadQueue.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Queue of file downloads, which limits count of downloads running at the same time
+ *
+ * Downloads are started by priority and then in order in which they were added.
+ * Download is started only if neither the global limit nor the limit of its
+ * server is reached, so one server can't take all download slots. The server
+ * limit counts connections, parts of one file downloaded at the same time use
+ * only free connections of its server. Waiting downloads are kept ordered for
+ * every server, so starting a download looks only at the first waiting
+ * download of every server.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class DownloadQueue {
+    private static final Comparator<DownloadJob> ORDER = Comparator.comparing(DownloadJob::getPriority).thenComparingLong(DownloadJob::getSequence);
+    
+    private int maxActive;
+    private int maxActivePerServer;
+    private ArrayList<DownloadJob> jobs;
+    private HashMap<String, PriorityQueue<DownloadJob>> queued;
+    private HashMap<String, Integer> connectionsPerServer;
+    private int active;
+    private long sequence;
+    private ExecutorService executor;
+    
+    /**
+     * Download queue constructor method
+     * 
+     * @param maxActive Maximal count of downloads running at the same time
+     * @param maxActivePerServer Maximal count of connections to one server used by downloads at the same time
+     */
+    public DownloadQueue(int maxActive, int maxActivePerServer) {
+        this.maxActive = maxActive;
+        this.maxActivePerServer = maxActivePerServer;
+        jobs = new ArrayList<>();
+        queued = new HashMap<>();
+        connectionsPerServer = new HashMap<>();
+        
+        // Define executor for downloads, count of running downloads is limited by the queue
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "downloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Adds download to the queue and starts it when there is free slot
+     * 
+     * @param job Download
+     * @return Added download
+     */
+    public synchronized DownloadJob add(DownloadJob job) {
+        job.setSequence(sequence++);
+        jobs.add(job);
+        queued.computeIfAbsent(job.getServerUrl(), server -> new PriorityQueue<>(ORDER)).add(job);
+        startQueued();
+        return job;
+    }
+    
+    /**
+     * Cancels download, waiting download is removed from queue and running download is stopped
+     * 
+     * @param job Download
+     */
+    public synchronized void cancel(DownloadJob job) {
+        synchronized (job) { // Running download can't end while it is canceled
+            if (job.getState() == DownloadJob.State.QUEUED) { // Canceled download is removed from queue when it is the first one
+                job.setState(DownloadJob.State.CANCELED);
+            } else if (job.getState() == DownloadJob.State.ACTIVE) {
+                job.setState(DownloadJob.State.CANCELED);
+                job.getFuture().cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * Returns all downloads in the order in which they were added
+     * 
+     * @return Waiting, running and done downloads
+     */
+    public synchronized List<DownloadJob> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+    
+    /**
+     * Removes done downloads from the download list
+     */
+    public synchronized void clearDone() {
+        jobs.removeIf(DownloadJob::isDone);
+    }
+    
+    /**
+     * Starts waiting downloads while there are free slots
+     */
+    private synchronized void startQueued() {
+        while (active < maxActive) {
+            // Find waiting download with the highest priority, whose server has free slot
+            PriorityQueue<DownloadJob> next = null;
+            Iterator<Map.Entry<String, PriorityQueue<DownloadJob>>> servers = queued.entrySet().iterator();
+            while (servers.hasNext()) {
+                Map.Entry<String, PriorityQueue<DownloadJob>> server = servers.next();
+                PriorityQueue<DownloadJob> waiting = server.getValue();
+                while (!waiting.isEmpty() && waiting.peek().getState() != DownloadJob.State.QUEUED) { // Remove canceled downloads
+                    waiting.poll();
+                }
+                
+                if (waiting.isEmpty()) {
+                    servers.remove();
+                } else if (connectionsPerServer.getOrDefault(server.getKey(), 0) < maxActivePerServer
+                        && (next == null || ORDER.compare(waiting.peek(), next.peek()) < 0)) {
+                    next = waiting;
+                }
+            }
+            
+            if (next == null) { // Is there no download, which can be started?
+                return;
+            }
+            
+            // Start the download
+            DownloadJob job = next.poll();
+            active++;
+            connectionsPerServer.merge(job.getServerUrl(), 1, Integer::sum);
+            job.setState(DownloadJob.State.ACTIVE);
+            job.setFuture(executor.submit(() -> run(job)));
+        }
+    }
+    
+    /**
+     * Runs the download and starts next waiting download after it
+     * 
+     * @param job Download
+     */
+    private void run(DownloadJob job) {
+        try {
+            job.run(new ApiParser.ConnectionLimit() {
+                @Override
+                public int acquire(int count) {
+                    return acquireConnections(job.getServerUrl(), count);
+                }
+                
+                @Override
+                public void release(int count) {
+                    releaseConnections(job.getServerUrl(), count);
+                }
+            });
+        } catch (Exception e) {
+            if (job.finish(DownloadJob.State.FAILED, e)) { // Canceled download doesn't fail
+                ServerMetrics.get(job.getServerUrl()).recordError();
+            }
+        } finally {
+            synchronized (this) {
+                active--;
+                releaseConnections(job.getServerUrl(), 1);
+            }
+        }
+    }
+    
+    /**
+     * Reserves free connections to server for parts of running download
+     * 
+     * @param serverUrl WFM server URL
+     * @param count Count of wanted connections
+     * @return Count of reserved connections, from 0 to count
+     */
+    private synchronized int acquireConnections(String serverUrl, int count) {
+        int reserved = Math.max(0, Math.min(count, maxActivePerServer - connectionsPerServer.getOrDefault(serverUrl, 0)));
+        connectionsPerServer.merge(serverUrl, reserved, Integer::sum);
+        return reserved;
+    }
+    
+    /**
+     * Frees connections to server and starts waiting downloads, which can use them
+     * 
+     * @param serverUrl WFM server URL
+     * @param count Count of freed connections
+     */
+    private synchronized void releaseConnections(String serverUrl, int count) {
+        connectionsPerServer.merge(serverUrl, -count, Integer::sum);
+        startQueued();
+    }
+}
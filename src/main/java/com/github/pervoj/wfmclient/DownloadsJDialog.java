@@ -0,0 +1,240 @@
+/* DownloadsJDialog.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JOptionPane;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * JDialog showing waiting, running and finished downloads
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class DownloadsJDialog extends javax.swing.JDialog {
+    private static final String[] COLUMNS = {"File", "Server", "State", "Progress"};
+    
+    private DownloadQueue queue;
+    private List<DownloadJob> jobs;
+    private AbstractTableModel model;
+    private Timer timer;
+
+    /**
+     * Downloads JDialog constructor method
+     */
+    public DownloadsJDialog(java.awt.Frame parent, boolean modal, DownloadQueue queue) {
+        super(parent, modal);
+        initComponents();
+        setLocationRelativeTo(parent);
+        this.queue = queue;
+        jobs = new ArrayList<>();
+        
+        // Set JTable model with download list
+        model = new AbstractTableModel() {
+            @Override
+            public int getRowCount() {
+                return jobs.size();
+            }
+            
+            @Override
+            public int getColumnCount() {
+                return COLUMNS.length;
+            }
+            
+            @Override
+            public String getColumnName(int column) {
+                return COLUMNS[column];
+            }
+            
+            @Override
+            public Object getValueAt(int row, int column) {
+                DownloadJob job = jobs.get(row);
+                switch (column) {
+                    case 0:
+                        return job.getFilePath();
+                    case 1:
+                        return job.getServerName();
+                    case 2:
+                        return job.getState().toString().toLowerCase();
+                    default:
+                        return job.getProgress() + " %";
+                }
+            }
+        };
+        downloadsJTable.setModel(model);
+        
+        // Refresh download list while the dialog is shown
+        timer = new Timer(500, evt -> refresh());
+        refresh();
+        timer.start();
+    }
+    
+    /**
+     * Loads download list from download queue, keeps selected row
+     */
+    private void refresh() {
+        int selected = downloadsJTable.getSelectedRow();
+        int count = jobs.size();
+        
+        jobs = queue.getJobs();
+        
+        if (count == jobs.size() && count > 0) { // Update values only, so selection is kept
+            model.fireTableRowsUpdated(0, jobs.size() - 1);
+        } else {
+            model.fireTableDataChanged();
+            if (selected >= 0 && selected < jobs.size()) {
+                downloadsJTable.setRowSelectionInterval(selected, selected);
+            }
+        }
+    }
+
+    /**
+     * This method is called from within the constructor to initialize the form.
+     * WARNING: Do NOT modify this code. The content of this method is always
+     * regenerated by the Form Editor.
+     */
+    @SuppressWarnings("unchecked")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+
+        jScrollPane1 = new javax.swing.JScrollPane();
+        downloadsJTable = new javax.swing.JTable();
+        cancelJButton = new javax.swing.JButton();
+        clearJButton = new javax.swing.JButton();
+        closeJButton = new javax.swing.JButton();
+
+        setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+        setTitle("Downloads");
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            public void windowClosed(java.awt.event.WindowEvent evt) {
+                formWindowClosed(evt);
+            }
+        });
+
+        downloadsJTable.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        jScrollPane1.setViewportView(downloadsJTable);
+
+        cancelJButton.setText("Cancel download");
+        cancelJButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cancelJButtonActionPerformed(evt);
+            }
+        });
+
+        clearJButton.setText("Clear finished");
+        clearJButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                clearJButtonActionPerformed(evt);
+            }
+        });
+
+        closeJButton.setText("Close");
+        closeJButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                closeJButtonActionPerformed(evt);
+            }
+        });
+
+        javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
+        getContentPane().setLayout(layout);
+        layout.setHorizontalGroup(
+            layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(layout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 576, Short.MAX_VALUE)
+                    .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, layout.createSequentialGroup()
+                        .addGap(0, 0, Short.MAX_VALUE)
+                        .addComponent(cancelJButton)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(clearJButton)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(closeJButton)))
+                .addContainerGap())
+        );
+        layout.setVerticalGroup(
+            layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, layout.createSequentialGroup()
+                .addContainerGap()
+                .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 300, Short.MAX_VALUE)
+                .addGap(18, 18, 18)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(cancelJButton)
+                    .addComponent(clearJButton)
+                    .addComponent(closeJButton))
+                .addContainerGap())
+        );
+
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+
+    /**
+     * Cancel button on click action
+     * 
+     * @param evt Action event
+     */
+    private void cancelJButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cancelJButtonActionPerformed
+        if (downloadsJTable.getSelectedRow() < 0) { // If nothing was selected:
+            // Show information message
+            JOptionPane.showMessageDialog(this, "You must select one of the downloads!", "Error", JOptionPane.WARNING_MESSAGE);
+        } else {
+            queue.cancel(jobs.get(downloadsJTable.getSelectedRow())); // Cancel selected download
+            refresh();
+        }
+    }//GEN-LAST:event_cancelJButtonActionPerformed
+
+    /**
+     * Clear button on click action
+     * 
+     * @param evt Action event
+     */
+    private void clearJButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_clearJButtonActionPerformed
+        queue.clearDone(); // Remove done downloads from the list
+        downloadsJTable.clearSelection();
+        refresh();
+    }//GEN-LAST:event_clearJButtonActionPerformed
+
+    /**
+     * Close button on click action
+     * 
+     * @param evt Action event
+     */
+    private void closeJButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_closeJButtonActionPerformed
+        dispose(); // Close dialog
+    }//GEN-LAST:event_closeJButtonActionPerformed
+
+    /**
+     * Dialog closed action
+     * 
+     * @param evt Window event
+     */
+    private void formWindowClosed(java.awt.event.WindowEvent evt) {//GEN-FIRST:event_formWindowClosed
+        timer.stop(); // Stop refreshing download list
+    }//GEN-LAST:event_formWindowClosed
+
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton cancelJButton;
+    private javax.swing.JButton clearJButton;
+    private javax.swing.JButton closeJButton;
+    private javax.swing.JTable downloadsJTable;
+    private javax.swing.JScrollPane jScrollPane1;
+    // End of variables declaration//GEN-END:variables
+}
@@ -0,0 +1,112 @@
+/* FileInfo.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+/**
+ * Size and version of file on server
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class FileInfo {
+    private long size;
+    private String lastModified;
+    private String etag;
+    private String hash;
+    
+    /**
+     * File info constructor method
+     * 
+     * @param size File size in bytes, -1 if it isn't known
+     * @param lastModified Last-Modified header, null if server didn't send it
+     * @param etag ETag header, null if server didn't send it
+     * @param hash Hash of downloaded file, null if it wasn't counted
+     */
+    public FileInfo(long size, String lastModified, String etag, String hash) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.etag = etag;
+        this.hash = hash;
+    }
+    
+    /**
+     * Getter for file size
+     * 
+     * @return File size in bytes, -1 if it isn't known
+     */
+    public long getSize() {
+        return size;
+    }
+    
+    /**
+     * Getter for Last-Modified header
+     * 
+     * @return Last-Modified header, null if server didn't send it
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+    
+    /**
+     * Getter for ETag header
+     * 
+     * @return ETag header, null if server didn't send it
+     */
+    public String getEtag() {
+        return etag;
+    }
+    
+    /**
+     * Getter for hash of downloaded file
+     * 
+     * @return Hash of downloaded file, null if it wasn't counted
+     */
+    public String getHash() {
+        return hash;
+    }
+    
+    /**
+     * Is this the same version of file as the other one?
+     * 
+     * Sizes must be same and ETag and Last-Modified must be same, if both of
+     * them are known. Without any version header the versions can't be same.
+     * 
+     * @param other Info about other version of file
+     * @return true - it is the same version, false - it is different or unknown version
+     */
+    public boolean isSameVersion(FileInfo other) {
+        if (other == null || size < 0 || size != other.size) {
+            return false;
+        }
+        
+        boolean compared = false;
+        if (etag != null && other.etag != null) {
+            if (!etag.equals(other.etag)) {
+                return false;
+            }
+            compared = true;
+        }
+        if (lastModified != null && other.lastModified != null) {
+            if (!lastModified.equals(other.lastModified)) {
+                return false;
+            }
+            compared = true;
+        }
+        return compared;
+    }
+}
@@ -22,19 +22,22 @@ import com.formdev.flatlaf.FlatDarkLaf;
 import com.github.pervoj.jiconfont.FontAwesomeSolid;
 import java.awt.Color;
 import java.awt.Desktop;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
@@ -47,7 +50,13 @@ import jiconfont.swing.IconFontSwing;
  */
 public class FilesJFrame extends javax.swing.JFrame {
     private SettingsManager config;
-    private ArrayList<String> serverList;
+    private ServerRegistry servers;
+    private ExecutorService loadExecutor;
+    private ArrayList<Future<?>> loadTasks;
+    private ListingCache listingCache;
+    private DownloadQueue downloadQueue;
+    private SearchIndex searchIndex;
+    private int loadGeneration;
 
     /**
      * Main JFrame constructor method
@@ -67,98 +76,345 @@ public class FilesJFrame extends javax.swing.JFrame {
         initComponents();
         setLocationRelativeTo(null);
         
-        serverList = new ArrayList<>(); // Define server array list instance
+        // Create tree items of directories only when they are expanded and remove them after collapse
+        filesJTree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent evt) {
+                Object node = evt.getPath().getLastPathComponent();
+                if (node instanceof ListingNode && !((ListingNode) node).isLoaded()) {
+                    ((ListingNode) node).loadChildren();
+                    ((DefaultTreeModel) filesJTree.getModel()).nodeStructureChanged((ListingNode) node);
+                }
+            }
+            
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent evt) {
+            }
+        });
+        filesJTree.addTreeExpansionListener(new TreeExpansionListener() {
+            @Override
+            public void treeExpanded(TreeExpansionEvent evt) {
+            }
+            
+            @Override
+            public void treeCollapsed(TreeExpansionEvent evt) {
+                Object node = evt.getPath().getLastPathComponent();
+                if (node instanceof ListingNode) {
+                    ((ListingNode) node).unloadChildren();
+                    ((DefaultTreeModel) filesJTree.getModel()).nodeStructureChanged((ListingNode) node);
+                }
+            }
+        });
         
-        try { // Try sort server list file
-            sortList();
-        } catch (Exception e) {
-            // Show error if something went wrong
-            JOptionPane.showMessageDialog(this, e.getMessage(), "Error sorting server list", JOptionPane.ERROR_MESSAGE);
-        }
+        servers = new ServerRegistry(config.getServerListFile()); // Define server registry, it is read after the frame is shown
+        
+        // Define executor for loading servers, count of servers loaded at the same time is limited by settings
+        loadExecutor = Executors.newFixedThreadPool(config.getLoadThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "server-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loadTasks = new ArrayList<>();
+        listingCache = new ListingCache(config.getCacheDir());
+        searchIndex = new SearchIndex();
+        HttpTransport.configure(config.getConnectTimeout() * 1000L, config.getReadTimeout() * 1000L);
+        ApiParser.setCheckTtl(config.getCheckTtl() * 1000L);
+        ApiParser.setDownloadSegments(config.getDownloadSegments(), config.getMinSegmentSize() * 1024L);
+        ApiParser.setDownloadCompression(config.isDownloadCompression());
+        downloadQueue = new DownloadQueue(config.getDownloadThreads(), config.getDownloadThreadsPerServer());
     }
     
     /**
      * Method for loading file tree after the frame is shown
      */
     public void initList() {
-        loadList();
+        FlightEvents.Refresh event = new FlightEvents.Refresh();
+        event.begin();
+        
+        // Read server list file once in background, the registry keeps it in memory after that
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                servers.load();
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    // Show error if something went wrong
+                    JOptionPane.showMessageDialog(FilesJFrame.this, e.getCause().getMessage(), "Error reading server list", JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                
+                loadServers(event);
+            }
+        }.execute();
     }
 
     /**
-     * Method for loading server list file to array list and file tree
+     * Method for loading servers from the registry to file tree
      */
     private void loadList() {
-        serverList.clear(); // Clear server array list
+        FlightEvents.Refresh event = new FlightEvents.Refresh();
+        event.begin();
+        loadServers(event);
+    }
+    
+    /**
+     * Method for loading servers from the registry to file tree
+     * 
+     * @param event Refresh event committed when all servers are loaded, it isn't committed when loading is canceled
+     */
+    private void loadServers(FlightEvents.Refresh event) {
+        // Cancel loading started by previous call
+        loadGeneration++;
+        for (Future<?> task : loadTasks) {
+            task.cancel(true);
+        }
+        loadTasks.clear();
         
-        // Read server list file and load it to array list
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(config.getServerListFile()), StandardCharsets.UTF_8))) {
-            String s;
-            while ((s = br.readLine()) != null) {
-                serverList.add(s);
-            }
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, e.getMessage(), "Error reading server list", JOptionPane.ERROR_MESSAGE);
+        // Remove files of removed servers from search index, other servers stay in it until they are loaded again
+        List<ServerRegistry.Server> serverList = servers.getServers(); // Servers don't change while they are being loaded
+        ArrayList<String> names = new ArrayList<>();
+        for (ServerRegistry.Server server : serverList) {
+            names.add(server.getName());
         }
+        searchIndex.retain(names);
         
         DefaultMutableTreeNode root = new DefaultMutableTreeNode("Connected servers"); // Define file tree root item
+        DefaultTreeModel model = new DefaultTreeModel(root); // Define tree model, servers are added as they are loaded
+        filesJTree.setModel(model); // Set tree model from root item
         
-        for (int i = 0; i < serverList.size(); i++) { // Iterate server array list
-            try { // Try add to root item server item from server api
-                root.add(new ApiParser().getFilesNode(serverList.get(i).split("///")[1], serverList.get(i).split("///")[0]));
-            } catch (Exception e) {
-                // Show error and information message if something went wrong
-                JOptionPane.showMessageDialog(this, e.getMessage(), "Error connecting server " + serverList.get(i).split("///")[0], JOptionPane.ERROR_MESSAGE);
-                JOptionPane.showMessageDialog(this, "An error occurred while connecting to server " + serverList.get(i).split("///")[0] + " (" + serverList.get(i).split("///")[1] + "). "
-                        + "This server will NOT be displayed in server tree, but you can remove it in remove dialog. "
-                        + "Until you remove this server this way, it is likely that the same error will occur again. "
-                        + "If you are sure that the error is on the server side and will be resolved soon, you do not need to remove the server.", "Important message", JOptionPane.INFORMATION_MESSAGE);
-            }
+        startLoading(serverList, model, event);
+    }
+    
+    /**
+     * Method for loading servers to file tree in background, items of other servers stay in the tree
+     * 
+     * @param serverList Servers to load
+     * @param model File tree model
+     * @param event Refresh event committed when all servers are loaded, it isn't committed when loading is canceled
+     */
+    private void startLoading(List<ServerRegistry.Server> serverList, DefaultTreeModel model, FlightEvents.Refresh event) {
+        int generation = loadGeneration;
+        ArrayList<Future<?>> tasks = new ArrayList<>(); // Tasks of these servers only
+        AtomicInteger remaining = new AtomicInteger(serverList.size()); // Count of servers, which are still being loaded
+        AtomicInteger failed = new AtomicInteger();
+        event.servers = serverList.size();
+        if (serverList.isEmpty()) {
+            event.end("", "", 0);
+        }
+        
+        // Show cached file lists first, all of them are read before any server is contacted
+        ArrayList<Future<ServerListing>> cachedListings = new ArrayList<>();
+        for (int i = 0; i < serverList.size(); i++) { // Iterate servers
+            String name = serverList.get(i).getName();
+            String url = serverList.get(i).getUrl();
+            
+            Future<ServerListing> cachedListing = loadExecutor.submit(() -> {
+                ServerListing cached = listingCache.load(url);
+                if (cached != null) {
+                    ListingIndex index = new ApiParser().buildIndex(url, cached.getEntries());
+                    ListingNode server = new ListingNode(index, "", name);
+                    SwingUtilities.invokeLater(() -> putServerNode(generation, model, server));
+                    indexServer(name, index); // Server item is shown before its files are indexed
+                }
+                return cached;
+            });
+            cachedListings.add(cachedListing);
+            tasks.add(cachedListing);
         }
         
-        filesJTree.setModel(new DefaultTreeModel(root)); // Set tree model from root item
+        for (int i = 0; i < serverList.size(); i++) { // Iterate servers
+            String name = serverList.get(i).getName();
+            String url = serverList.get(i).getUrl();
+            Future<ServerListing> cachedListing = cachedListings.get(i);
+            
+            // Load server item from server api in background
+            tasks.add(loadExecutor.submit(() -> {
+                try { // Try get server item from server api
+                    ServerListing cached = cachedListing.get(); // Cached file list is already read or being read
+                    
+                    ServerListing listing = new ApiParser().getListing(url, cached);
+                    
+                    if (listing != cached) { // Replace server item only if file list changed
+                        try { // Try save new file list to cache, unless the server was removed in the meantime
+                            if (servers.contains(name)) {
+                                listingCache.save(url, listing);
+                            }
+                        } catch (Exception e) {
+                            // Cache is only used to show the tree sooner, server item is shown anyway
+                        }
+                        
+                        ListingIndex index = new ApiParser().buildIndex(url, listing.getEntries());
+                        ListingNode server = new ListingNode(index, "", name);
+                        SwingUtilities.invokeLater(() -> putServerNode(generation, model, server));
+                        indexServer(name, index); // Only this server is indexed again, after its item is shown
+                    }
+                } catch (Exception e) {
+                    if (!Thread.currentThread().isInterrupted()) {
+                        failed.incrementAndGet();
+                        SwingUtilities.invokeLater(() -> showServerError(generation, model, name, url, e));
+                    }
+                }
+                
+                if (remaining.decrementAndGet() == 0 && !Thread.currentThread().isInterrupted()) { // Was this the last loaded server?
+                    event.failed = failed.get();
+                    event.end("", "", 0);
+                    SwingUtilities.invokeLater(() -> finishLoading(generation, tasks));
+                }
+            }));
+        }
+        loadTasks.addAll(tasks); // Tasks are forgotten on the event dispatch thread, so they can't finish before they are added
     }
     
     /**
-     * Method for saving server list file from array list
+     * Method for adding files of loaded server to search index, called in background after its item was shown
      * 
-     * @throws Exception when writing to file fails
+     * @param name Server name
+     * @param index Index of server files
      */
-    private void saveList() throws Exception {
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(config.getServerListFile()), StandardCharsets.UTF_8))) {
-            for (int i = 0; i < serverList.size(); i++) {
-                bw.write(serverList.get(i));
-                bw.newLine();
-            }
-            bw.flush();
+    private void indexServer(String name, ListingIndex index) {
+        searchIndex.put(name, index);
+        if (!servers.contains(name)) { // Was the server removed while it was being indexed?
+            searchIndex.remove(name);
         }
     }
     
     /**
-     * Method for sorting server list file
+     * Method for forgetting finished loading tasks, so cached file lists read by them can be garbage collected
      * 
-     * @throws Exception when reading file or writing to file fails
+     * @param generation Generation of loading, which finished
+     * @param tasks Finished tasks
      */
-    private void sortList() throws Exception {
-        ArrayList<String> serverList = new ArrayList<>(); // Define instance of array list
+    private void finishLoading(int generation, ArrayList<Future<?>> tasks) {
+        if (generation == loadGeneration) { // Wasn't the list reloaded in the meantime?
+            loadTasks.removeAll(tasks);
+        }
+    }
+    
+    /**
+     * Method for adding loaded server item to the file tree at its sorted position, replaces previous item of the same server
+     * 
+     * @param generation Generation of loading, which loaded this server
+     * @param model File tree model
+     * @param server Loaded server item
+     */
+    private void putServerNode(int generation, DefaultTreeModel model, DefaultMutableTreeNode server) {
+        if (generation != loadGeneration) { // Was the list reloaded in the meantime?
+            return;
+        }
+        if (!servers.contains((String) server.getUserObject())) { // Was the server removed in the meantime?
+            searchIndex.remove((String) server.getUserObject()); // Loading task could index it after it was removed
+            return;
+        }
+        
+        DefaultMutableTreeNode root = (DefaultMutableTreeNode) model.getRoot();
+        removeServerNode(model, (String) server.getUserObject()); // Remove previously shown item of this server
+        
+        // Find position of the first server which belongs after this server
+        int index = 0;
+        while (index < root.getChildCount()
+                && ((String) ((DefaultMutableTreeNode) root.getChildAt(index)).getUserObject()).compareTo((String) server.getUserObject()) < 0) {
+            index++;
+        }
+        
+        model.insertNodeInto(server, root, index);
         
-        // Load server list file to this array list
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(config.getServerListFile()), StandardCharsets.UTF_8))) {
-            String s;
-            while ((s = br.readLine()) != null) {
-                serverList.add(s);
+        // Keep the root item expanded to show newly loaded servers
+        if (root.getChildCount() == 1) {
+            filesJTree.expandPath(new TreePath(root));
+        }
+    }
+    
+    /**
+     * Method for removing server item from the file tree
+     * 
+     * @param model File tree model
+     * @param name Server name
+     */
+    private void removeServerNode(DefaultTreeModel model, String name) {
+        DefaultMutableTreeNode root = (DefaultMutableTreeNode) model.getRoot();
+        for (int i = 0; i < root.getChildCount(); i++) {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode) root.getChildAt(i);
+            if (node.getUserObject().equals(name)) {
+                model.removeNodeFromParent(node);
+                return;
             }
         }
+    }
+    
+    /**
+     * Method for showing error of server which couldn't be loaded
+     * 
+     * @param generation Generation of loading, which tried to load this server
+     * @param model File tree model
+     * @param name Server name
+     * @param url Server URL
+     * @param e Occurred exception
+     */
+    private void showServerError(int generation, DefaultTreeModel model, String name, String url, Exception e) {
+        if (generation != loadGeneration || !servers.contains(name)) { // Was the list reloaded or the server removed in the meantime?
+            return;
+        }
         
-        Collections.sort(serverList); // Sort array list
+        removeServerNode(model, name); // Remove item shown from cache
+        searchIndex.remove(name); // Files which aren't in the file tree can't be found
         
-        // Write array list back to server list file
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(config.getServerListFile()), StandardCharsets.UTF_8))) {
-            for (int i = 0; i < serverList.size(); i++) {
-                bw.write(serverList.get(i));
-                bw.newLine();
+        // Show error and information message
+        JOptionPane.showMessageDialog(this, e.getMessage(), "Error connecting server " + name, JOptionPane.ERROR_MESSAGE);
+        JOptionPane.showMessageDialog(this, "An error occurred while connecting to server " + name + " (" + url + "). "
+                + "This server will NOT be displayed in server tree, but you can remove it in remove dialog. "
+                + "Until you remove this server this way, it is likely that the same error will occur again. "
+                + "If you are sure that the error is on the server side and will be resolved soon, you do not need to remove the server.", "Important message", JOptionPane.INFORMATION_MESSAGE);
+    }
+    
+    /**
+     * Method for selecting file (directory) in the file tree, directories on its path are expanded
+     * 
+     * @param serverName Server name
+     * @param path File (directory) path
+     * @return true - the file was selected, false - the server or the file isn't in the file tree
+     */
+    public boolean showFile(String serverName, String path) {
+        DefaultMutableTreeNode root = (DefaultMutableTreeNode) filesJTree.getModel().getRoot();
+        
+        // Find server item
+        ListingNode node = null;
+        for (int i = 0; i < root.getChildCount(); i++) {
+            if (root.getChildAt(i) instanceof ListingNode && ((ListingNode) root.getChildAt(i)).getUserObject().equals(serverName)) {
+                node = (ListingNode) root.getChildAt(i);
+            }
+        }
+        if (node == null) {
+            return false;
+        }
+        
+        // Find numbers of items on the way from server root directory to the file
+        ListingIndex index = node.getIndex();
+        ArrayList<Integer> ids = new ArrayList<>();
+        for (int id = index.find(path); id != 0; id = index.getParent(id)) {
+            if (id < 0) { // Was the server loaded again without this file?
+                return false;
             }
-            bw.flush();
+            ids.add(0, id);
         }
+        
+        // Go down from server item to the file, every directory on the way is expanded, so its subitems are created
+        TreePath treePath = new TreePath(new Object[] {root, node});
+        for (int id : ids) {
+            filesJTree.expandPath(treePath);
+            node = (ListingNode) node.getChildAt(id - index.getFirstChild(node.getId())); // Subitems have consecutive numbers
+            treePath = treePath.pathByAddingChild(node);
+        }
+        
+        filesJTree.setSelectionPath(treePath);
+        filesJTree.scrollPathToVisible(treePath);
+        return true;
     }
     
     /**
@@ -166,18 +422,14 @@ public class FilesJFrame extends javax.swing.JFrame {
      */
     private void addServer() {
         // Open add dialog
-        AddServerJDialog dialog = new AddServerJDialog(this, true, serverList);
+        AddServerJDialog dialog = new AddServerJDialog(this, true, servers); // Dialog saves added server
         dialog.setVisible(true);
         
-        try {
-            if (!dialog.isCanceled()) { //If dialog wasn't canceled
-                // Save server list to file
-                saveList();
-                sortList();
-                loadList();
-            }
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, e.getMessage(), "Error adding server", JOptionPane.ERROR_MESSAGE);
+        if (!dialog.isCanceled()) { //If dialog wasn't canceled
+            // Load only added server, items of other servers stay expanded and selected
+            FlightEvents.Refresh event = new FlightEvents.Refresh();
+            event.begin();
+            startLoading(Collections.singletonList(dialog.getAdded()), (DefaultTreeModel) filesJTree.getModel(), event);
         }
     }
     
@@ -186,22 +438,169 @@ public class FilesJFrame extends javax.swing.JFrame {
      */
     private void removeServer() {
         // Open remove dialog
-        RemoveServerJDialog dialog = new RemoveServerJDialog(this, true, serverList);
+        RemoveServerJDialog dialog = new RemoveServerJDialog(this, true, servers); // Dialog saves server list without removed server
         dialog.setVisible(true);
         
-        try { // Try save new server list and load it
-            if (!dialog.isCanceled()) { // If dialog wasn't canceled
-                // Save server list to file
-                saveList();
-                sortList();
-                loadList();
+        if (!dialog.isCanceled()) { // If dialog wasn't canceled
+            // Remove only item of removed server, items of other servers stay expanded and selected
+            ServerRegistry.Server removed = dialog.getRemoved();
+            removeServerNode((DefaultTreeModel) filesJTree.getModel(), removed.getName());
+            searchIndex.remove(removed.getName());
+            
+            // Remove cached file list, if no other server has the same URL
+            boolean used = false;
+            for (ServerRegistry.Server server : servers.getServers()) {
+                if (server.getUrl().equals(removed.getUrl())) {
+                    used = true;
+                    break;
+                }
+            }
+            if (!used) {
+                listingCache.remove(removed.getUrl());
             }
-        } catch (Exception e) {
-            // Show error if something went wrong
-            JOptionPane.showMessageDialog(this, e.getMessage(), "Error removing server", JOptionPane.ERROR_MESSAGE);
         }
     }
     
+    /**
+     * Method for downloading files and whole directories of tree paths in background
+     * 
+     * @param paths Tree paths of files and directories
+     */
+    private void downloadPaths(TreePath[] paths) {
+        // Use only paths of server items, which aren't inside another downloaded directory
+        ArrayList<TreePath> downloaded = new ArrayList<>();
+        for (TreePath path : paths) {
+            if (path.getPathCount() < 2 || !(path.getLastPathComponent() instanceof ListingNode)) {
+                continue;
+            }
+            
+            boolean inside = false;
+            for (TreePath other : paths) {
+                if (other != path && other.isDescendant(path) && !other.equals(path)) {
+                    inside = true;
+                    break;
+                }
+            }
+            if (!inside) {
+                downloaded.add(path);
+            }
+        }
+        
+        if (downloaded.isEmpty()) { // If nothing was selected:
+            // Show information message
+            JOptionPane.showMessageDialog(this, "You must select files or directories on one of the servers!", "Error", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        // Get server urls for the paths while server list can be read
+        ArrayList<String> serverUrls = new ArrayList<>();
+        for (TreePath path : downloaded) {
+            serverUrls.add(getServerUrl((String) ((DefaultMutableTreeNode) path.getPathComponent(1)).getUserObject()));
+        }
+        
+        // Add all files to download queue in background
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                DirectoryDownloader downloader = new DirectoryDownloader(downloadQueue);
+                int count = 0;
+                for (int i = 0; i < downloaded.size(); i++) {
+                    ListingNode node = (ListingNode) downloaded.get(i).getLastPathComponent();
+                    String serverName = (String) ((DefaultMutableTreeNode) downloaded.get(i).getPathComponent(1)).getUserObject();
+                    File serverDir = new File(config.getDownloadDir() + File.separator + serverName);
+                    count += downloader.download(node.getIndex(), serverName, serverUrls.get(i), node.getFilePath(), serverDir).size();
+                }
+                return count;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    // Show error if something went wrong
+                    JOptionPane.showMessageDialog(FilesJFrame.this, e.getCause().getMessage(), "Error downloading files", JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+        
+        new DownloadsJDialog(this, false, downloadQueue).setVisible(true); // Show progress of downloads
+    }
+    
+    /**
+     * Method for synchronizing server of tree path to download directory in background
+     * 
+     * @param path Tree path of server or any of its items
+     */
+    private void syncServer(TreePath path) {
+        if (path == null || path.getPathCount() < 2 || !(path.getPathComponent(1) instanceof ListingNode)) { // If no loaded server was selected:
+            // Show information message
+            JOptionPane.showMessageDialog(this, "You must select one of the loaded servers!", "Error", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        ListingNode node = (ListingNode) path.getPathComponent(1);
+        String serverName = (String) node.getUserObject();
+        String serverUrl = getServerUrl(serverName);
+        
+        // Ask for deleting files removed from server
+        int option = JOptionPane.showConfirmDialog(this, "Delete downloaded files, which were removed from server " + serverName + "?", "Synchronize server", JOptionPane.YES_NO_CANCEL_OPTION);
+        if (option != JOptionPane.YES_OPTION && option != JOptionPane.NO_OPTION) {
+            return;
+        }
+        
+        // Synchronize server in background
+        new SwingWorker<ServerSync.Result, Void>() {
+            @Override
+            protected ServerSync.Result doInBackground() throws Exception {
+                File serverDir = new File(config.getDownloadDir() + File.separator + serverName);
+                return new ServerSync(downloadQueue, config.getSyncCheckThreads(), option == JOptionPane.YES_OPTION, config.isSyncVerifyHashes())
+                        .sync(node.getIndex(), serverName, serverUrl, serverDir);
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    ServerSync.Result result = get();
+                    
+                    // Show summary
+                    JOptionPane.showMessageDialog(FilesJFrame.this, "Downloaded: " + result.getDownloaded() + "\nUnchanged: " + result.getUnchanged()
+                            + "\nDeleted: " + result.getDeleted() + "\nFailed: " + result.getFailed(), "Server " + serverName + " synchronized", JOptionPane.INFORMATION_MESSAGE);
+                } catch (ExecutionException e) {
+                    // Show error if something went wrong
+                    JOptionPane.showMessageDialog(FilesJFrame.this, e.getCause().getMessage(), "Error synchronizing server", JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+        
+        new DownloadsJDialog(this, false, downloadQueue).setVisible(true); // Show progress of downloads
+    }
+    
+    /**
+     * Returns URL of server with specified name
+     * 
+     * @param serverName Server name
+     * @return WFM server URL, empty string if there is no such server
+     */
+    private String getServerUrl(String serverName) {
+        ServerRegistry.Server server = servers.get(serverName);
+        return server == null ? "" : server.getUrl();
+    }
+    
+    /**
+     * Method for opening downloaded file in default application
+     * 
+     * @param file Downloaded file
+     * @throws Exception when file can't be opened
+     */
+    private void openFile(File file) throws Exception {
+        Desktop.getDesktop().open(file);
+    }
+    
     /**
      * This method is called from within the constructor to initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is always
@@ -222,6 +621,11 @@ public class FilesJFrame extends javax.swing.JFrame {
         topJMenuBar = new javax.swing.JMenuBar();
         jMenu1 = new javax.swing.JMenu();
         aboutJMenuItem = new javax.swing.JMenuItem();
+        downloadsJMenuItem = new javax.swing.JMenuItem();
+        downloadSelectedJMenuItem = new javax.swing.JMenuItem();
+        searchJMenuItem = new javax.swing.JMenuItem();
+        syncJMenuItem = new javax.swing.JMenuItem();
+        diagnosticsJMenuItem = new javax.swing.JMenuItem();
         jSeparator1 = new javax.swing.JPopupMenu.Separator();
         quitJMenuItem = new javax.swing.JMenuItem();
         jMenu2 = new javax.swing.JMenu();
@@ -295,6 +699,56 @@ public class FilesJFrame extends javax.swing.JFrame {
         aboutJMenuItem.setIcon(IconFontSwing.buildIcon(FontAwesomeSolid.INFO_CIRCLE, 16, new Color(173, 173, 173)));
         aboutJMenuItem.setText("About application");
         jMenu1.add(aboutJMenuItem);
+
+        downloadsJMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_J, java.awt.event.InputEvent.CTRL_DOWN_MASK));
+        downloadsJMenuItem.setIcon(IconFontSwing.buildIcon(FontAwesomeSolid.LIST, 16, new Color(173, 173, 173)));
+        downloadsJMenuItem.setText("Downloads");
+        downloadsJMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                downloadsJMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(downloadsJMenuItem);
+
+        downloadSelectedJMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_S, java.awt.event.InputEvent.CTRL_DOWN_MASK));
+        downloadSelectedJMenuItem.setIcon(IconFontSwing.buildIcon(FontAwesomeSolid.DOWNLOAD, 16, new Color(173, 173, 173)));
+        downloadSelectedJMenuItem.setText("Download selected");
+        downloadSelectedJMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                downloadSelectedJMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(downloadSelectedJMenuItem);
+
+        searchJMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_F, java.awt.event.InputEvent.CTRL_DOWN_MASK));
+        searchJMenuItem.setIcon(IconFontSwing.buildIcon(FontAwesomeSolid.SEARCH, 16, new Color(173, 173, 173)));
+        searchJMenuItem.setText("Search files");
+        searchJMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                searchJMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(searchJMenuItem);
+
+        syncJMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_Y, java.awt.event.InputEvent.CTRL_DOWN_MASK));
+        syncJMenuItem.setIcon(IconFontSwing.buildIcon(FontAwesomeSolid.SYNC_ALT, 16, new Color(173, 173, 173)));
+        syncJMenuItem.setText("Synchronize server");
+        syncJMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                syncJMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(syncJMenuItem);
+
+        diagnosticsJMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_G, java.awt.event.InputEvent.CTRL_DOWN_MASK));
+        diagnosticsJMenuItem.setIcon(IconFontSwing.buildIcon(FontAwesomeSolid.CHART_BAR, 16, new Color(173, 173, 173)));
+        diagnosticsJMenuItem.setText("Diagnostics");
+        diagnosticsJMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                diagnosticsJMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(diagnosticsJMenuItem);
         jMenu1.add(jSeparator1);
 
         quitJMenuItem.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_Q, java.awt.event.InputEvent.CTRL_DOWN_MASK));
@@ -388,52 +842,37 @@ public class FilesJFrame extends javax.swing.JFrame {
                 evt.consume();
                 
                 try { // Try to get file path and download this file
-                    // Parse the tree path
-                    String path = tp.toString();
-                    path = path.replaceAll("\\[", "");
-                    path = path.replaceAll("]", "");
-                    path = path.replaceAll(", ", "/");
-
-                    if (path.split("/").length > 2) { // Check if the double click was on file (or directory), which belongs to one of the servers (check if the path has more than 2 items)
-                        String serverName = path.split("/")[1]; // Get server (which the file or directory belongs to) name
-
-                        // Get server url for this server name from server list
-                        String serverUrl = "";
-                        for (int i = 0; i < serverList.size(); i++) {
-                            String item = serverList.get(i);
-                            if (item.split("///")[0].equals(serverName)) {
-                                serverUrl = item.split("///")[1];
-                                break;
+                    // Check if the double click was on file (or directory), which belongs to one of the servers (check if the path has more than 2 items)
+                    if (tp.getPathCount() > 2 && tp.getLastPathComponent() instanceof ListingNode) {
+                        ListingNode node = (ListingNode) tp.getLastPathComponent();
+                        String serverName = (String) ((DefaultMutableTreeNode) tp.getPathComponent(1)).getUserObject(); // Get server (which the file or directory belongs to) name
+                        
+                        if (node.getType() == ListingIndex.Type.DIRECTORY) { // Is it directory?
+                            // Ask before downloading whole directory
+                            if (JOptionPane.showConfirmDialog(this, "Do you want to download the whole directory " + node.getUserObject() + "?", "Download directory", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                                downloadPaths(new TreePath[] {tp});
                             }
+                            return;
                         }
-
-                        String filePath = path.substring(path.split("/")[0].length() + path.split("/")[1].length() + 2); // Get file path from tree path
                         
-                        if (new ApiParser().isFile(serverUrl, filePath.replaceAll(" ", "%20"))) { // Check if the selected item is file
-                            // Get file URL from server url and file path
-                            String fileUrl = serverUrl;
-                            if (!fileUrl.endsWith("/")) {
-                                fileUrl += "/";
-                            }
-                            fileUrl += filePath;
-
-                            // Define File for downloaded file
-                            File downloadedFile = new File(config.getDownloadDir() + File.separator + serverName + File.separator + filePath.replace("/", File.separator));
-                            
-                            // Create parent directories for downloaded file, if don't exist
-                            if (!downloadedFile.getParentFile().exists()) {
-                                downloadedFile.getParentFile().mkdirs();
-                            }
-                            
-                            // Create empty file for downloaded file, if doesn't exist
-                            if (!downloadedFile.exists()) {
-                                downloadedFile.createNewFile();
-                            }
-
-                            // Download and open the file
-                            new ApiParser().downloadFile(fileUrl.replaceAll(" ", "%20"), downloadedFile.getAbsolutePath());
-                            Desktop.getDesktop().open(downloadedFile);
+                        String serverUrl = getServerUrl(serverName); // Get server url for this server name from server list
+                        String filePath = node.getFilePath(); // Get file path from tree node
+                        
+                        // Define File for downloaded file
+                        File downloadedFile = DirectoryDownloader.getLocalFile(new File(config.getDownloadDir() + File.separator + serverName), filePath);
+                        if (downloadedFile == null) {
+                            throw new Exception("Path " + filePath + " leads outside of download directory!");
                         }
+                        
+                        // Download the file in background with priority before other downloads and open it, server is asked for type only if it isn't known
+                        FlightEvents.FileOpen event = new FlightEvents.FileOpen();
+                        event.begin();
+                        DownloadJob job = downloadQueue.add(new DownloadJob(serverName, serverUrl, filePath, downloadedFile, DownloadJob.Priority.OPEN,
+                                node.getIndex(), finished -> {
+                                    event.end(serverUrl, filePath, finished.getTransferred());
+                                    openFile(finished.getDownloadedFile());
+                                }));
+                        new DownloadMonitor(this, downloadQueue, job).start();
                     }
                 } catch (Exception e) {
                     // Show error if something went wrong
@@ -506,6 +945,52 @@ public class FilesJFrame extends javax.swing.JFrame {
         loadList();
     }//GEN-LAST:event_refreshJMenuItemActionPerformed
 
+    /**
+     * On click action for menu "downloads" item
+     * 
+     * @param evt Action event
+     */
+    private void downloadsJMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_downloadsJMenuItemActionPerformed
+        new DownloadsJDialog(this, false, downloadQueue).setVisible(true); // Open downloads dialog
+    }//GEN-LAST:event_downloadsJMenuItemActionPerformed
+
+    /**
+     * On click action for menu "download selected" item
+     * 
+     * @param evt Action event
+     */
+    private void downloadSelectedJMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_downloadSelectedJMenuItemActionPerformed
+        TreePath[] paths = filesJTree.getSelectionPaths();
+        downloadPaths(paths == null ? new TreePath[0] : paths);
+    }//GEN-LAST:event_downloadSelectedJMenuItemActionPerformed
+
+    /**
+     * On click action for menu "search files" item
+     * 
+     * @param evt Action event
+     */
+    private void searchJMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_searchJMenuItemActionPerformed
+        new SearchJDialog(this, false, searchIndex).setVisible(true); // Open search dialog
+    }//GEN-LAST:event_searchJMenuItemActionPerformed
+
+    /**
+     * On click action for menu "synchronize server" item
+     * 
+     * @param evt Action event
+     */
+    private void syncJMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_syncJMenuItemActionPerformed
+        syncServer(filesJTree.getSelectionPath());
+    }//GEN-LAST:event_syncJMenuItemActionPerformed
+
+    /**
+     * On click action for menu "diagnostics" item
+     * 
+     * @param evt Action event
+     */
+    private void diagnosticsJMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_diagnosticsJMenuItemActionPerformed
+        new DiagnosticsJDialog(this, false).setVisible(true); // Open diagnostics dialog
+    }//GEN-LAST:event_diagnosticsJMenuItemActionPerformed
+
     /**
      * Main method
      * 
@@ -533,6 +1018,9 @@ public class FilesJFrame extends javax.swing.JFrame {
     private javax.swing.JMenuItem aboutJMenuItem;
     private javax.swing.JButton addJButton;
     private javax.swing.JMenuItem addServerJMenuItem;
+    private javax.swing.JMenuItem diagnosticsJMenuItem;
+    private javax.swing.JMenuItem downloadSelectedJMenuItem;
+    private javax.swing.JMenuItem downloadsJMenuItem;
     private javax.swing.JButton editJButton;
     private javax.swing.JMenuItem editServerJMenuItem;
     private javax.swing.JScrollPane filesJScrollPane;
@@ -546,6 +1034,8 @@ public class FilesJFrame extends javax.swing.JFrame {
     private javax.swing.JMenuItem refreshJMenuItem;
     private javax.swing.JButton removeJButton;
     private javax.swing.JMenuItem removeServerJMenuItem;
+    private javax.swing.JMenuItem searchJMenuItem;
+    private javax.swing.JMenuItem syncJMenuItem;
     private javax.swing.JMenuBar topJMenuBar;
     private javax.swing.JToolBar topJToolBar;
     // End of variables declaration//GEN-END:variables
@@ -0,0 +1,166 @@
+/* FlightEvents.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of communication with WFM servers
+ *
+ * Events cost almost nothing when no recording is running. A recording started
+ * by -XX:StartFlightRecording or jcmd shows them in JDK Mission Control under
+ * "WFM Client" category next to GC and I/O events of the same time.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public final class FlightEvents {
+
+    /**
+     * Class with events only, it can't be created
+     */
+    private FlightEvents() {
+    }
+    
+    /**
+     * Base of all events, duration is measured from begin() to end()
+     */
+    @Category({"WFM Client", "Server API"})
+    @StackTrace(false)
+    public abstract static class ServerEvent extends Event {
+        @Label("Server")
+        @Description("WFM server URL")
+        public String server;
+        
+        @Label("Path")
+        @Description("File (directory) path or requested API URL")
+        public String path;
+        
+        @Label("Bytes")
+        @Description("Count of bytes received from server")
+        @DataAmount
+        public long bytes;
+        
+        /**
+         * Fills the fields and commits the event, if it is recorded
+         * 
+         * @param server WFM server URL
+         * @param path File (directory) path or requested API URL
+         * @param bytes Count of bytes received from server
+         */
+        public void end(String server, String path, long bytes) {
+            end();
+            if (shouldCommit()) {
+                this.server = server;
+                this.path = path;
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+    
+    /**
+     * Check if URL is WFM server
+     */
+    @Name("com.github.pervoj.wfmclient.CheckApi")
+    @Label("Check API")
+    public static class CheckApi extends ServerEvent {
+    }
+    
+    /**
+     * Request for file list, until server responded
+     */
+    @Name("com.github.pervoj.wfmclient.ListingFetch")
+    @Label("Listing Fetch")
+    public static class ListingFetch extends ServerEvent {
+        @Label("Not Modified")
+        @Description("Server responded that file list didn't change")
+        public boolean notModified;
+    }
+    
+    /**
+     * Reading file list from the page with API content
+     */
+    @Name("com.github.pervoj.wfmclient.Extraction")
+    @Label("HTML Extraction")
+    public static class Extraction extends ServerEvent {
+        @Label("Items")
+        @Description("Count of read file list entries")
+        public int items;
+    }
+    
+    /**
+     * Building index of file list
+     */
+    @Name("com.github.pervoj.wfmclient.TreeBuild")
+    @Label("Tree Build")
+    public static class TreeBuild extends ServerEvent {
+        @Label("Items")
+        @Description("Count of indexed files and directories")
+        public int items;
+    }
+    
+    /**
+     * Asking server whether path is file
+     */
+    @Name("com.github.pervoj.wfmclient.TypeCheck")
+    @Label("Type Check")
+    public static class TypeCheck extends ServerEvent {
+        @Label("File")
+        public boolean file;
+    }
+    
+    /**
+     * Download of one file
+     */
+    @Name("com.github.pervoj.wfmclient.Download")
+    @Label("Download")
+    public static class Download extends ServerEvent {
+    }
+    
+    /**
+     * Loading of all servers to the file tree, until the last server is loaded
+     */
+    @Name("com.github.pervoj.wfmclient.Refresh")
+    @Label("Refresh")
+    @Category({"WFM Client", "User Action"})
+    public static class Refresh extends ServerEvent {
+        @Label("Servers")
+        @Description("Count of loaded servers")
+        public int servers;
+        
+        @Label("Failed")
+        @Description("Count of servers which couldn't be loaded")
+        public int failed;
+    }
+    
+    /**
+     * Opening of file from the file tree, from double click until the file is downloaded
+     */
+    @Name("com.github.pervoj.wfmclient.FileOpen")
+    @Label("File Open")
+    @Category({"WFM Client", "User Action"})
+    public static class FileOpen extends ServerEvent {
+    }
+}
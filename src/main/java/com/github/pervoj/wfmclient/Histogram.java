@@ -0,0 +1,215 @@
+/* Histogram.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe histogram of non-negative values
+ *
+ * Values are counted in buckets which are at most 25 % wide, so percentiles
+ * are approximate, but recording is cheap and memory doesn't grow.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class Histogram {
+    private static final int SUB_BUCKETS = 4;
+    
+    private AtomicLongArray buckets;
+    private AtomicLong count;
+    private AtomicLong sum;
+    private AtomicLong max;
+    
+    /**
+     * Histogram constructor method
+     */
+    public Histogram() {
+        buckets = new AtomicLongArray(SUB_BUCKETS + 62 * SUB_BUCKETS);
+        count = new AtomicLong();
+        sum = new AtomicLong();
+        max = new AtomicLong();
+    }
+    
+    /**
+     * Records one value
+     * 
+     * @param value Recorded value, negative values are recorded as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        buckets.incrementAndGet(getBucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+    
+    /**
+     * Returns summary of recorded values
+     * 
+     * @return Count, mean, percentiles and maximum of recorded values
+     */
+    public Snapshot getSnapshot() {
+        long total = count.get();
+        if (total == 0) {
+            return new Snapshot(0, 0, 0, 0, 0, 0);
+        }
+        
+        long maximum = max.get();
+        return new Snapshot(total, sum.get() / total, getPercentile(total, 0.5, maximum), getPercentile(total, 0.95, maximum),
+                getPercentile(total, 0.99, maximum), maximum);
+    }
+    
+    /**
+     * Returns upper bound of bucket with percentile
+     * 
+     * @param total Count of recorded values
+     * @param percentile Percentile from 0 to 1
+     * @param maximum Maximal recorded value
+     * @return Approximate percentile value
+     */
+    private long getPercentile(long total, double percentile, long maximum) {
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(getUpperBound(i), maximum);
+            }
+        }
+        return maximum;
+    }
+    
+    /**
+     * Returns bucket of value
+     * 
+     * @param value Non-negative value
+     * @return Bucket index
+     */
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // At least 2
+        int sub = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - 2) * SUB_BUCKETS + sub;
+    }
+    
+    /**
+     * Returns the largest value of bucket
+     * 
+     * @param bucket Bucket index
+     * @return Upper bound of bucket
+     */
+    private static long getUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+    }
+    
+    /**
+     * Summary of histogram values at one moment
+     */
+    public static class Snapshot {
+        private long count;
+        private long mean;
+        private long p50;
+        private long p95;
+        private long p99;
+        private long max;
+        
+        /**
+         * Snapshot constructor method
+         * 
+         * @param count Count of values
+         * @param mean Mean value
+         * @param p50 Median
+         * @param p95 95th percentile
+         * @param p99 99th percentile
+         * @param max Maximal value
+         */
+        @ConstructorProperties({"count", "mean", "p50", "p95", "p99", "max"})
+        public Snapshot(long count, long mean, long p50, long p95, long p99, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+        }
+        
+        /**
+         * Getter for count of values
+         * 
+         * @return Count of values
+         */
+        public long getCount() {
+            return count;
+        }
+        
+        /**
+         * Getter for mean value
+         * 
+         * @return Mean value
+         */
+        public long getMean() {
+            return mean;
+        }
+        
+        /**
+         * Getter for median
+         * 
+         * @return Median
+         */
+        public long getP50() {
+            return p50;
+        }
+        
+        /**
+         * Getter for 95th percentile
+         * 
+         * @return 95th percentile
+         */
+        public long getP95() {
+            return p95;
+        }
+        
+        /**
+         * Getter for 99th percentile
+         * 
+         * @return 99th percentile
+         */
+        public long getP99() {
+            return p99;
+        }
+        
+        /**
+         * Getter for maximal value
+         * 
+         * @return Maximal value
+         */
+        public long getMax() {
+            return max;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+/* HttpTransport.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP client shared by all requests to WFM servers
+ *
+ * One client keeps open connections to every server, so file lists, checks
+ * and downloads from the same server reuse them. HTTP/2 is used when
+ * server supports it. Read timeout limits waiting for response headers and
+ * also every read of response body, so a server which stops sending the
+ * body in the middle doesn't block the download forever.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class HttpTransport {
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+    
+    private static final AtomicLong RECEIVED_BYTES = new AtomicLong();
+    private static final AtomicLong DECODED_BYTES = new AtomicLong();
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "http-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile HttpClient client = createClient(10 * 1000);
+    private static volatile long readTimeout = 30 * 1000;
+    
+    /**
+     * Sets timeouts of all following requests
+     * 
+     * @param connectTimeout Time for opening connection in milliseconds
+     * @param readTimeout Time for waiting for response headers and for every part of response body in milliseconds
+     */
+    public static void configure(long connectTimeout, long readTimeout) {
+        client = createClient(connectTimeout);
+        HttpTransport.readTimeout = readTimeout;
+    }
+    
+    /**
+     * Sends GET request, response body must be closed
+     * 
+     * @param url Requested URL
+     * @param headers Request headers as name and value pairs
+     * @return Response with body stream
+     * @throws Exception when request failed
+     */
+    public static HttpResponse<InputStream> get(String url, String... headers) throws Exception {
+        return send(createRequest(url, headers).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+    
+    /**
+     * Sends HEAD request
+     * 
+     * @param url Requested URL
+     * @param headers Request headers as name and value pairs
+     * @return Response without body
+     * @throws Exception when request failed
+     */
+    public static HttpResponse<Void> head(String url, String... headers) throws Exception {
+        return send(createRequest(url, headers).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+    }
+    
+    /**
+     * Sends request with shared client
+     * 
+     * @param <T> Type of response body
+     * @param request Request
+     * @param handler Handler of response body
+     * @return Response
+     * @throws Exception when request failed
+     */
+    private static <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws Exception {
+        try {
+            return client.send(request, handler);
+        } catch (IOException e) {
+            if (e.getMessage() == null) { // Failed connection has no message for error dialog
+                throw new IOException("Can't connect to " + request.uri().getAuthority() + "!", e);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Returns response body decoded by its Content-Encoding
+     * 
+     * @param response Response with body stream
+     * @return Decoded body stream
+     * @throws IOException when body is encoded by unsupported encoding
+     */
+    public static InputStream getBody(HttpResponse<InputStream> response) throws IOException {
+        return getBody(response, null);
+    }
+    
+    /**
+     * Returns response body decoded by its Content-Encoding and counts its received bytes
+     * 
+     * @param response Response with body stream
+     * @param received Counter of received bytes of this body, can be null
+     * @return Decoded body stream
+     * @throws IOException when body is encoded by unsupported encoding
+     */
+    public static InputStream getBody(HttpResponse<InputStream> response, AtomicLong received) throws IOException {
+        InputStream in = new CountingInputStream(new IdleTimeoutInputStream(response.body(), readTimeout), RECEIVED_BYTES);
+        if (received != null) {
+            in = new CountingInputStream(in, received);
+        }
+        String encoding = getHeader(response, "Content-Encoding");
+        
+        try {
+            if (encoding == null || encoding.trim().isEmpty() || encoding.trim().equalsIgnoreCase("identity")) {
+                return new CountingInputStream(in, DECODED_BYTES);
+            } else if (encoding.trim().equalsIgnoreCase("gzip") || encoding.trim().equalsIgnoreCase("x-gzip")) {
+                return new CountingInputStream(new GZIPInputStream(in, 64 * 1024), DECODED_BYTES); // Reads gzip header
+            } else if (encoding.trim().equalsIgnoreCase("deflate")) {
+                // Deflate should be in zlib format, but some servers send raw deflate data
+                BufferedInputStream bin = new BufferedInputStream(in, 64 * 1024);
+                bin.mark(2);
+                int cmf = bin.read();
+                int flg = bin.read();
+                bin.reset();
+                boolean zlib = cmf >= 0 && flg >= 0 && (cmf & 0x0f) == 8 && (cmf * 256 + flg) % 31 == 0;
+                return new CountingInputStream(new InflaterInputStream(bin, new Inflater(!zlib), 64 * 1024), DECODED_BYTES);
+            }
+            
+            throw new IOException("Server sent content with unsupported encoding " + encoding + "!");
+        } catch (IOException | RuntimeException e) { // Close connection and stop its read timeout, when body can't be decoded
+            try {
+                in.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Returns count of bytes of all response bodies as they were received
+     * 
+     * @return Count of received (possibly compressed) bytes
+     */
+    public static long getReceivedBytes() {
+        return RECEIVED_BYTES.get();
+    }
+    
+    /**
+     * Returns count of bytes of all response bodies after decoding
+     * 
+     * @return Count of decoded bytes
+     */
+    public static long getDecodedBytes() {
+        return DECODED_BYTES.get();
+    }
+    
+    /**
+     * Returns Content-Length of response
+     * 
+     * @param response Response
+     * @return Content length in bytes, -1 if it isn't known
+     */
+    public static long getContentLength(HttpResponse<?> response) {
+        return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+    }
+    
+    /**
+     * Returns header of response
+     * 
+     * @param response Response
+     * @param name Header name
+     * @return First value of header, null if response doesn't contain it
+     */
+    public static String getHeader(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+    
+    /**
+     * Creates request with timeout and headers
+     * 
+     * @param url Requested URL
+     * @param headers Request headers as name and value pairs
+     * @return Request builder
+     */
+    private static HttpRequest.Builder createRequest(String url, String... headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(toUri(url)).timeout(Duration.ofMillis(readTimeout));
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        return builder;
+    }
+    
+    /**
+     * Converts URL to URI, characters which aren't allowed in URI are encoded
+     * 
+     * Already encoded characters are kept, so file URLs with "%20" work
+     * the same as before.
+     * 
+     * @param url URL
+     * @return URI
+     */
+    private static URI toUri(String url) {
+        int scheme = url.indexOf("://");
+        int pathStart = url.indexOf('/', scheme < 0 ? 0 : scheme + 3); // Brackets are allowed only in host
+        
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < url.length(); i += Character.charCount(url.codePointAt(i))) {
+            int c = url.codePointAt(i);
+            if (c > 32 && c < 127 && "\"<>\\^`{|}".indexOf(c) < 0 && (pathStart < 0 || i < pathStart || (c != '[' && c != ']'))) {
+                sb.append((char) c);
+            } else {
+                for (byte b : new String(Character.toChars(c)).getBytes(StandardCharsets.UTF_8)) {
+                    sb.append(String.format("%%%02X", b & 0xff));
+                }
+            }
+        }
+        return URI.create(sb.toString());
+    }
+    
+    /**
+     * Creates HTTP client
+     * 
+     * @param connectTimeout Time for opening connection in milliseconds
+     * @return HTTP client
+     */
+    private static HttpClient createClient(long connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .build();
+    }
+    
+    /**
+     * Stream which is closed when one read waits for data longer than timeout
+     * 
+     * Request timeout covers only waiting for response headers, this stream
+     * covers the body. Watchdog thread closes the body, which stops waiting
+     * read, and the read throws exception about the timeout.
+     */
+    private static class IdleTimeoutInputStream extends FilterInputStream {
+        private long timeout;
+        private ScheduledFuture<?> check;
+        private volatile long readStarted;
+        private volatile boolean reading;
+        private volatile boolean timedOut;
+        
+        /**
+         * Timeout stream constructor method
+         * 
+         * @param in Response body
+         * @param timeout Time for waiting for data in milliseconds
+         */
+        public IdleTimeoutInputStream(InputStream in, long timeout) {
+            super(in);
+            this.timeout = timeout;
+            long period = Math.max(10, timeout / 4); // Read is stopped at most a quarter of timeout later
+            check = WATCHDOG.scheduleWithFixedDelay(this::checkIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            readStarted = System.nanoTime();
+            reading = true;
+            int count;
+            try {
+                count = super.read(b, off, len);
+            } catch (IOException e) {
+                if (timedOut) {
+                    throw createException();
+                }
+                throw e;
+            } finally {
+                reading = false;
+            }
+            
+            if (timedOut) { // Closed body can look like its end
+                throw createException();
+            }
+            if (count == -1) { // Body is read, it doesn't need to be watched anymore
+                check.cancel(false);
+            }
+            return count;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            check.cancel(false);
+            super.close();
+        }
+        
+        /**
+         * Closes the body, if a read waits longer than timeout, called by watchdog thread
+         */
+        private void checkIdle() {
+            if (reading && System.nanoTime() - readStarted > timeout * 1000000) {
+                timedOut = true;
+                check.cancel(false);
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Waiting read fails anyway
+                }
+            }
+        }
+        
+        /**
+         * Creates exception about the timeout
+         * 
+         * @return Exception with message for error dialog
+         */
+        private HttpTimeoutException createException() {
+            return new HttpTimeoutException("Server didn't send any data for " + Math.max(1, timeout / 1000) + " seconds!");
+        }
+    }
+    
+    /**
+     * Stream counting bytes read from other stream
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private AtomicLong counter;
+        
+        /**
+         * Counting stream constructor method
+         * 
+         * @param in Counted stream
+         * @param counter Counter of read bytes
+         */
+        public CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                counter.incrementAndGet();
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                counter.addAndGet(count);
+            }
+            return count;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long count = super.skip(n);
+            counter.addAndGet(count);
+            return count;
+        }
+    }
+}
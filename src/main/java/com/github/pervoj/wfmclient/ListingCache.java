@@ -0,0 +1,144 @@
+/* ListingCache.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+
+/**
+ * On-disk cache of the last loaded file list of every server
+ *
+ * Every server has one file named by hash of its URL. The file starts with
+ * ETag, Last-Modified and content hash lines followed by the files, one per line.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class ListingCache {
+    private File cacheDir;
+    
+    /**
+     * Cache constructor method
+     * 
+     * @param cacheDir Directory with cached file lists
+     */
+    public ListingCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+    
+    /**
+     * Returns cached file list of server
+     * 
+     * @param url WFM server URL
+     * @return Cached file list, null if server isn't cached or cache can't be read
+     */
+    public ServerListing load(String url) {
+        File file = getCacheFile(url);
+        if (!file.exists()) {
+            return null;
+        }
+        
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String etag = br.readLine();
+            String lastModified = br.readLine();
+            String hash = br.readLine();
+            if (etag == null || lastModified == null || hash == null) { // Is file damaged?
+                return null;
+            }
+            
+            ArrayList<String> entries = new ArrayList<>();
+            String s;
+            while ((s = br.readLine()) != null) {
+                entries.add(s);
+            }
+            
+            return new ServerListing(entries.toArray(new String[0]), etag.isEmpty() ? null : etag, lastModified.isEmpty() ? null : lastModified, hash);
+        } catch (Exception e) {
+            return null; // Damaged cache is same as no cache, server will be loaded again
+        }
+    }
+    
+    /**
+     * Saves file list of server to cache, the cache file is replaced at once
+     * 
+     * @param url WFM server URL
+     * @param listing File list to save
+     * @throws Exception when writing to file fails
+     */
+    public void save(String url, ServerListing listing) throws Exception {
+        if (!cacheDir.exists()) {
+            cacheDir.mkdirs();
+        }
+        
+        File file = getCacheFile(url);
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        
+        // Write file list to temporary file
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            bw.write(listing.getEtag() == null ? "" : listing.getEtag());
+            bw.newLine();
+            bw.write(listing.getLastModified() == null ? "" : listing.getLastModified());
+            bw.newLine();
+            bw.write(listing.getHash());
+            bw.newLine();
+            for (String entry : listing.getEntries()) {
+                bw.write(entry);
+                bw.newLine();
+            }
+            bw.flush();
+        }
+        
+        // Replace cache file with temporary file
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Removes cached file list of server
+     * 
+     * @param url WFM server URL
+     */
+    public void remove(String url) {
+        getCacheFile(url).delete();
+    }
+    
+    /**
+     * Returns cache file for server
+     * 
+     * @param url WFM server URL
+     * @return Cache file File
+     */
+    private File getCacheFile(String url) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            return new File(cacheDir, new BigInteger(1, hash).toString(16));
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // SHA-1 is always available
+        }
+    }
+}
@@ -0,0 +1,440 @@
+/* ListingIndex.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Index of file list of one WFM server, which holds subfiles of every directory
+ *
+ * Every item has a number, the root directory is 0 and subfiles of every
+ * directory have consecutive numbers, so the index holds only the item name,
+ * number of its parent and number of its first subfile. Full paths aren't
+ * stored, they are created when they are asked for. Same names in different
+ * directories share one String. Items are found by parent number and name in
+ * a hash table of item numbers.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class ListingIndex {
+    private String[] names;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] table;
+    private BitSet directories;
+    private BitSet knownFiles;
+    
+    /**
+     * Type of item in file list
+     */
+    public enum Type {
+        /** Item is file, server told it */
+        FILE,
+        /** Item is directory */
+        DIRECTORY,
+        /** Item is file or empty directory, server must be asked */
+        UNKNOWN
+    }
+    
+    /**
+     * Index constructor method, builds index from the file list
+     * 
+     * Subfiles keep the order of the file list and files whose parent directory
+     * isn't listed are left out. Paths ending with slash are marked as directories.
+     * 
+     * @param files Complete array of files
+     */
+    public ListingIndex(String[] files) {
+        // Give temporary number to every path, root directory is 0
+        HashMap<String, Integer> ids = new HashMap<>(files.length * 2);
+        ArrayList<String> unique = new ArrayList<>(files.length + 1);
+        BitSet marked = new BitSet();
+        ids.put("", 0);
+        unique.add("");
+        for (String file : files) {
+            boolean directory = file.length() > 1 && file.endsWith("/"); // Is path marked as directory?
+            if (directory) {
+                file = file.substring(0, file.length() - 1);
+            }
+            
+            Integer id = ids.get(file);
+            if (id == null) { // Skip duplicate paths
+                id = unique.size();
+                ids.put(file, id);
+                unique.add(file);
+            }
+            if (directory) {
+                marked.set(id);
+            }
+        }
+        
+        // Find parent of every path, paths whose parent directory isn't listed get -1
+        int count = unique.size();
+        int[] tempParents = new int[count];
+        int[] childCounts = new int[count];
+        tempParents[0] = -1;
+        for (int id = 1; id < count; id++) {
+            Integer parent = ids.get(getParentPath(unique.get(id)));
+            tempParents[id] = parent == null ? -1 : parent;
+            if (parent != null) {
+                childCounts[parent]++;
+            }
+        }
+        ids = null; // Map of full paths isn't needed anymore
+        
+        // List subfiles of every directory in the order of the file list
+        int[] childStarts = new int[count + 1];
+        for (int id = 0; id < count; id++) {
+            childStarts[id + 1] = childStarts[id] + childCounts[id];
+        }
+        int[] tempChildren = new int[childStarts[count]];
+        int[] filled = new int[count];
+        for (int id = 1; id < count; id++) {
+            int parent = tempParents[id];
+            if (parent >= 0) {
+                tempChildren[childStarts[parent] + filled[parent]++] = id;
+            }
+        }
+        
+        // Number items from root directory level by level, so subfiles of every directory get consecutive numbers
+        int[] order = new int[count]; // Temporary numbers in the new order
+        int[] newIds = new int[count];
+        int size = 1;
+        for (int i = 0; i < size; i++) {
+            int id = order[i];
+            for (int c = childStarts[id]; c < childStarts[id + 1]; c++) {
+                newIds[tempChildren[c]] = size;
+                order[size++] = tempChildren[c];
+            }
+        }
+        
+        // Fill final arrays, only items reachable from root directory are kept
+        table = new int[Integer.highestOneBit(Math.max(size * 4 / 3, 1)) * 2]; // Table is at most 3/4 full
+        int[] namePool = new int[table.length]; // Numbers of items with the first occurrence of every name
+        names = new String[size];
+        parents = new int[size];
+        firstChildren = new int[size + 1];
+        directories = new BitSet(size);
+        knownFiles = new BitSet(size);
+        int next = 1;
+        for (int i = 0; i < size; i++) {
+            int id = order[i];
+            names[i] = getNameFromPath(unique.get(id));
+            
+            // Use String of the same name, if it was already used
+            int slot = mix(names[i].hashCode()) & (namePool.length - 1);
+            while (namePool[slot] != 0 && !names[namePool[slot] - 1].equals(names[i])) {
+                slot = (slot + 1) & (namePool.length - 1);
+            }
+            if (namePool[slot] == 0) {
+                namePool[slot] = i + 1;
+            } else {
+                names[i] = names[namePool[slot] - 1];
+            }
+            
+            parents[i] = i == 0 ? -1 : newIds[tempParents[id]];
+            firstChildren[i] = next;
+            next += childCounts[id];
+            if (marked.get(id)) {
+                directories.set(i);
+            }
+            
+            // Add item to the table, root directory isn't there, so 0 marks empty slot
+            if (i > 0) {
+                slot = findSlot(parents[i], names[i]);
+                table[slot] = i;
+            }
+        }
+        firstChildren[size] = next;
+    }
+    
+    /**
+     * Returns paths of subfiles (subdirectories) of the directory
+     * 
+     * @param path Directory path, empty string for root directory
+     * @return Paths of subfiles (subdirectories)
+     */
+    public List<String> getChildren(String path) {
+        int id = find(path);
+        if (id < 0 || !hasChildren(id)) {
+            return Collections.emptyList();
+        }
+        
+        int first = firstChildren[id];
+        int count = firstChildren[id + 1] - first;
+        String prefix = path.isEmpty() ? "" : path + "/";
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                if (index < 0 || index >= count) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+                }
+                return prefix + names[first + index];
+            }
+            
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+    
+    /**
+     * Is the path in the file list?
+     * 
+     * @param path File (directory) path, empty string for root directory
+     * @return true - server listed this path, false - there is no such path
+     */
+    public boolean contains(String path) {
+        return find(path) >= 0;
+    }
+    
+    /**
+     * Has this directory (file) another subdirectories (subfiles)?
+     * 
+     * @param path Directory path, empty string for root directory
+     * @return true - this directory has another subdirectories (subfiles), false - this is file or empty directory
+     */
+    public boolean hasChildren(String path) {
+        int id = find(path);
+        return id >= 0 && hasChildren(id);
+    }
+    
+    /**
+     * Returns type of item, which is known without asking the server
+     * 
+     * Items with subitems or marked as directories are directories. Other items
+     * can be files or empty directories, even if their name has a file
+     * extension (e.g. "v1.2" or "backup.d"), so only server can tell. Its
+     * answer is remembered by {@link #setType(String, Type)}.
+     * 
+     * @param path File (directory) path, empty string for root directory
+     * @return Type of item
+     */
+    public Type getType(String path) {
+        int id = find(path);
+        if (id < 0) { // Unknown path can be anything
+            return path.isEmpty() ? Type.DIRECTORY : Type.UNKNOWN;
+        }
+        return getType(id);
+    }
+    
+    /**
+     * Remembers type of item, which server told, so it isn't asked again for this file list
+     * 
+     * @param path File (directory) path
+     * @param type Type told by server
+     */
+    public void setType(String path, Type type) {
+        int id = find(path);
+        if (id > 0) {
+            setType(id, type);
+        }
+    }
+    
+    /**
+     * Returns count of indexed files and directories
+     * 
+     * @return Count of indexed files and directories
+     */
+    public int size() {
+        return names.length - 1;
+    }
+    
+    /**
+     * Returns number of item
+     * 
+     * @param path File (directory) path, empty string for root directory
+     * @return Item number, 0 for root directory, -1 if there is no such path
+     */
+    public int find(String path) {
+        int id = 0;
+        int start = 0;
+        while (start < path.length()) {
+            int slash = path.indexOf('/', start);
+            int end = slash < 0 ? path.length() : slash;
+            id = findChild(id, path.substring(start, end));
+            if (id < 0) {
+                return -1;
+            }
+            start = end + 1;
+        }
+        return id;
+    }
+    
+    /**
+     * Returns path of item
+     * 
+     * @param id Item number
+     * @return File (directory) path, empty string for root directory
+     */
+    public String getPath(int id) {
+        if (id == 0) {
+            return "";
+        }
+        
+        StringBuilder path = new StringBuilder(names[id]);
+        for (int parent = parents[id]; parent > 0; parent = parents[parent]) {
+            path.insert(0, '/').insert(0, names[parent]);
+        }
+        return path.toString();
+    }
+    
+    /**
+     * Returns name of item, last part of its path
+     * 
+     * @param id Item number
+     * @return File (directory) name, empty string for root directory
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+    
+    /**
+     * Returns number of parent directory of item
+     * 
+     * @param id Item number
+     * @return Parent directory number, -1 for root directory
+     */
+    public int getParent(int id) {
+        return parents[id];
+    }
+    
+    /**
+     * Returns number of the first subfile of directory, other subfiles follow it
+     * 
+     * @param id Directory number
+     * @return Number of the first subfile
+     */
+    public int getFirstChild(int id) {
+        return firstChildren[id];
+    }
+    
+    /**
+     * Returns count of subfiles (subdirectories) of directory
+     * 
+     * @param id Directory number
+     * @return Count of subfiles (subdirectories)
+     */
+    public int getChildCount(int id) {
+        return firstChildren[id + 1] - firstChildren[id];
+    }
+    
+    /**
+     * Has this directory (file) another subdirectories (subfiles)?
+     * 
+     * @param id Item number
+     * @return true - this directory has another subdirectories (subfiles), false - this is file or empty directory
+     */
+    public boolean hasChildren(int id) {
+        return firstChildren[id + 1] > firstChildren[id];
+    }
+    
+    /**
+     * Returns type of item, which is known without asking the server
+     * 
+     * @param id Item number
+     * @return Type of item
+     */
+    public synchronized Type getType(int id) {
+        if (knownFiles.get(id)) {
+            return Type.FILE;
+        }
+        return id == 0 || hasChildren(id) || directories.get(id) ? Type.DIRECTORY : Type.UNKNOWN;
+    }
+    
+    /**
+     * Remembers type of item, which server told, so it isn't asked again for this file list
+     * 
+     * @param id Item number
+     * @param type Type told by server
+     */
+    public synchronized void setType(int id, Type type) {
+        if (type == Type.FILE) {
+            knownFiles.set(id);
+        } else if (type == Type.DIRECTORY) {
+            directories.set(id);
+        }
+    }
+    
+    /**
+     * Returns last part of path - file (directory) name
+     * 
+     * @param path File (directory) path for which you want to get name
+     * @return File (directory) name
+     */
+    public static String getNameFromPath(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+    
+    /**
+     * Returns path of parent directory
+     * 
+     * @param path File (directory) path
+     * @return Parent directory path, empty string for files in root directory
+     */
+    public static String getParentPath(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+    
+    /**
+     * Finds subfile of directory by name
+     * 
+     * @param id Directory number
+     * @param name Subfile name
+     * @return Subfile number, -1 if there is no such subfile
+     */
+    private int findChild(int id, String name) {
+        int child = table[findSlot(id, name)];
+        return child == 0 ? -1 : child;
+    }
+    
+    /**
+     * Returns slot of the table with the item, or empty slot where the item belongs
+     * 
+     * @param parent Parent directory number
+     * @param name Item name
+     * @return Slot index
+     */
+    private int findSlot(int parent, String name) {
+        int mask = table.length - 1;
+        int slot = mix(name.hashCode() + parent * 0x9E3779B9) & mask;
+        while (table[slot] != 0 && (parents[table[slot]] != parent || !names[table[slot]].equals(name))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    /**
+     * Spreads bits of hash, so similar names don't get neighbouring slots
+     * 
+     * @param hash Hash code
+     * @return Mixed hash code
+     */
+    private static int mix(int hash) {
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,134 @@
+/* ListingNode.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * Tree node of file (directory) on WFM server, which creates its subitems only when they are needed
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class ListingNode extends DefaultMutableTreeNode {
+    private ListingIndex index;
+    private int id;
+    private boolean loaded;
+    
+    /**
+     * Tree node constructor method
+     * 
+     * @param index Index of server file list
+     * @param path File (directory) path in the index, empty string for server root directory
+     * @param title Title shown in the tree
+     */
+    public ListingNode(ListingIndex index, String path, String title) {
+        this(index, index.find(path), title);
+    }
+    
+    /**
+     * Tree node constructor method
+     * 
+     * @param index Index of server file list
+     * @param id Item number in the index, 0 for server root directory
+     * @param title Title shown in the tree
+     */
+    public ListingNode(ListingIndex index, int id, String title) {
+        super(title);
+        this.index = index;
+        this.id = id;
+    }
+    
+    /**
+     * Getter for index of server file list
+     * 
+     * @return Index of server file list
+     */
+    public ListingIndex getIndex() {
+        return index;
+    }
+    
+    /**
+     * Getter for item number in the index
+     * 
+     * @return Item number, 0 for server root directory
+     */
+    public int getId() {
+        return id;
+    }
+    
+    /**
+     * Getter for file (directory) path
+     * 
+     * @return File (directory) path, empty string for server root directory
+     */
+    public String getFilePath() {
+        return index.getPath(id); // Path isn't stored, it is needed only when the file is downloaded
+    }
+    
+    /**
+     * Getter for type of item, which is known from file list or was told by server
+     * 
+     * @return Type of item
+     */
+    public ListingIndex.Type getType() {
+        return index.getType(id);
+    }
+    
+    /**
+     * Are subitems of this node created?
+     * 
+     * @return true - subitems are created, false - subitems aren't created
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+    
+    /**
+     * Creates subitems of this node from the index, if they aren't created yet
+     */
+    public void loadChildren() {
+        if (loaded) {
+            return;
+        }
+        
+        int first = index.getFirstChild(id);
+        for (int child = first; child < first + index.getChildCount(id); child++) {
+            add(new ListingNode(index, child, index.getName(child)));
+        }
+        loaded = true;
+    }
+    
+    /**
+     * Removes subitems of this node, they will be created again when needed
+     */
+    public void unloadChildren() {
+        removeAllChildren();
+        loaded = false;
+    }
+    
+    /**
+     * Node is leaf when the directory doesn't have any subitems in the index
+     * 
+     * @return true - it is file or empty directory, false - it is directory with subitems
+     */
+    @Override
+    public boolean isLeaf() {
+        return !index.hasChildren(id);
+    }
+}
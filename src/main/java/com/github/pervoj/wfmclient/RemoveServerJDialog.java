@@ -18,9 +18,11 @@
 
 package com.github.pervoj.wfmclient;
 
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import javax.swing.DefaultListModel;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
 
 /**
  * JDialog used for removing server
@@ -28,13 +30,15 @@ import javax.swing.JOptionPane;
  * @author Vojtěch Perník <pervoj@gmx.com>
  */
 public class RemoveServerJDialog extends javax.swing.JDialog {
-    private ArrayList<String> servers;
+    private ServerRegistry servers;
+    private List<ServerRegistry.Server> listed;
+    private ServerRegistry.Server removed;
     private boolean canceled;
 
     /**
      * Remove JDialog constructor method
      */
-    public RemoveServerJDialog(java.awt.Frame parent, boolean modal, ArrayList<String> servers) {
+    public RemoveServerJDialog(java.awt.Frame parent, boolean modal, ServerRegistry servers) {
         super(parent, modal);
         initComponents();
         setLocationRelativeTo(parent);
@@ -45,8 +49,9 @@ public class RemoveServerJDialog extends javax.swing.JDialog {
         
         // Set JList model with server list
         DefaultListModel<String> model = new DefaultListModel<>();
-        for (int i = 0; i < servers.size(); i++) {
-            model.addElement(servers.get(i).split("///")[0] + " (" + servers.get(i).split("///")[1] + ")");
+        listed = servers.getServers();
+        for (ServerRegistry.Server server : listed) {
+            model.addElement(server.getName() + " (" + server.getUrl() + ")");
         }
         serversJList.setModel(model);
     }
@@ -59,6 +64,26 @@ public class RemoveServerJDialog extends javax.swing.JDialog {
     public boolean isCanceled() {
         return canceled;
     }
+    
+    /**
+     * Returns removed server
+     * 
+     * @return Removed server, null if dialog was canceled
+     */
+    public ServerRegistry.Server getRemoved() {
+        return removed;
+    }
+    
+    /**
+     * Disables the dialog while server list file is being saved
+     * 
+     * @param saving true - saving started, false - saving finished
+     */
+    private void setSaving(boolean saving) {
+        removeJButton.setEnabled(!saving);
+        cancelJButton.setEnabled(!saving);
+        setDefaultCloseOperation(saving ? javax.swing.WindowConstants.DO_NOTHING_ON_CLOSE : javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+    }
 
     /**
      * This method is called from within the constructor to initialize the form.
@@ -148,9 +173,31 @@ public class RemoveServerJDialog extends javax.swing.JDialog {
             // Show information message
             JOptionPane.showMessageDialog(this, "You must select one of the list items!", "Error", JOptionPane.WARNING_MESSAGE);
         } else {
-            servers.remove(serversJList.getSelectedIndex()); // Remove selected server from array list
-            canceled = false; // Dialog wasn't canceled
-            dispose(); // Close dialog
+            String name = listed.get(serversJList.getSelectedIndex()).getName();
+            setSaving(true);
+            
+            // Remove selected server from the registry, which saves server list file in background
+            new SwingWorker<ServerRegistry.Server, Void>() {
+                @Override
+                protected ServerRegistry.Server doInBackground() throws Exception {
+                    return servers.remove(name);
+                }
+                
+                @Override
+                protected void done() {
+                    setSaving(false);
+                    try {
+                        removed = get();
+                        canceled = removed == null; // Dialog wasn't canceled, unless the server was already removed
+                        dispose(); // Close dialog
+                    } catch (ExecutionException e) {
+                        // Show error and keep dialog open if something went wrong
+                        JOptionPane.showMessageDialog(RemoveServerJDialog.this, e.getCause().getMessage(), "Error removing server", JOptionPane.ERROR_MESSAGE);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }.execute();
         }
     }//GEN-LAST:event_removeJButtonActionPerformed
 
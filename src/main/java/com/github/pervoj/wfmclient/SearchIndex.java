@@ -0,0 +1,369 @@
+/* SearchIndex.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index for searching files by name across all servers
+ *
+ * Every server has its own part of the index, which is replaced when the server
+ * is loaded again, so refresh of one server doesn't rebuild the others. Names
+ * are found by their trigrams, queries shorter than three characters by first
+ * one or two characters of names.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class SearchIndex {
+    private ConcurrentHashMap<String, Shard> shards;
+    
+    /**
+     * Search index constructor method
+     */
+    public SearchIndex() {
+        shards = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Indexes files of server, replaces previous index of the same server
+     * 
+     * @param serverName Server name
+     * @param index Index of server file list
+     */
+    public void put(String serverName, ListingIndex index) {
+        shards.put(serverName, new Shard(index));
+    }
+    
+    /**
+     * Removes files of server from the index
+     * 
+     * @param serverName Server name
+     */
+    public void remove(String serverName) {
+        shards.remove(serverName);
+    }
+    
+    /**
+     * Removes files of all servers, which aren't in the list
+     * 
+     * @param serverNames Names of servers, which should stay in the index
+     */
+    public void retain(Collection<String> serverNames) {
+        shards.keySet().retainAll(serverNames);
+    }
+    
+    /**
+     * Returns count of indexed files and directories of all servers
+     * 
+     * @return Count of indexed files and directories
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards.values()) {
+            size += shard.index.size();
+        }
+        return size;
+    }
+    
+    /**
+     * Finds files and directories whose name contains the query, case is ignored
+     * 
+     * Queries shorter than three characters find only names starting with them.
+     * Results are sorted by server name and then by depth in the file tree.
+     * 
+     * @param query Searched text
+     * @param limit Maximal count of results
+     * @return Found files and directories
+     */
+    public List<Match> search(String query, int limit) {
+        ArrayList<Match> matches = new ArrayList<>();
+        String lower = query.trim().toLowerCase(Locale.ROOT);
+        if (lower.isEmpty()) {
+            return matches;
+        }
+        
+        ArrayList<String> serverNames = new ArrayList<>(shards.keySet());
+        serverNames.sort(null);
+        for (String serverName : serverNames) {
+            Shard shard = shards.get(serverName);
+            if (shard == null) { // Was server removed in the meantime?
+                continue;
+            }
+            
+            for (int id : lower.length() < 3 ? shard.findPrefix(lower) : shard.findSubstring(lower, limit - matches.size())) {
+                if (matches.size() == limit) {
+                    return matches;
+                }
+                matches.add(new Match(serverName, shard.index.getPath(id), shard.index.getType(id)));
+            }
+        }
+        return matches;
+    }
+    
+    /**
+     * Returns key of three characters of the name
+     * 
+     * @param name Lower case name
+     * @param start Position of the first character
+     * @return Trigram key
+     */
+    private static long trigram(String name, int start) {
+        return (long) name.charAt(start) << 32 | (long) name.charAt(start + 1) << 16 | name.charAt(start + 2);
+    }
+    
+    /**
+     * Returns key of first one or two characters of the name
+     * 
+     * @param name Lower case name
+     * @param length Count of characters
+     * @return Prefix key, it is different from every trigram key
+     */
+    private static long prefix(String name, int length) {
+        return (long) length << 48 | (long) name.charAt(0) << 16 | (length == 2 ? name.charAt(1) : 0);
+    }
+    
+    /**
+     * Found file or directory
+     */
+    public static class Match {
+        private String serverName;
+        private String path;
+        private ListingIndex.Type type;
+        
+        /**
+         * Search result constructor method
+         * 
+         * @param serverName Server name
+         * @param path File (directory) path
+         * @param type Type of item
+         */
+        public Match(String serverName, String path, ListingIndex.Type type) {
+            this.serverName = serverName;
+            this.path = path;
+            this.type = type;
+        }
+        
+        /**
+         * Getter for server name
+         * 
+         * @return Server name
+         */
+        public String getServerName() {
+            return serverName;
+        }
+        
+        /**
+         * Getter for file (directory) path
+         * 
+         * @return File (directory) path
+         */
+        public String getPath() {
+            return path;
+        }
+        
+        /**
+         * Getter for type of item, which is known without asking the server
+         * 
+         * @return Type of item
+         */
+        public ListingIndex.Type getType() {
+            return type;
+        }
+    }
+    
+    /**
+     * Index of names of one server, it isn't changed after it is built
+     */
+    private static class Shard {
+        private ListingIndex index;
+        private PostingsTable trigrams;
+        private PostingsTable prefixes;
+        
+        /**
+         * Builds index of all files and directories of the file list index
+         * 
+         * @param index Index of server file list
+         */
+        private Shard(ListingIndex index) {
+            this.index = index;
+            
+            // Add every name to lists of its trigrams and of its first one and two characters, item numbers in every list are ascending
+            trigrams = new PostingsTable();
+            prefixes = new PostingsTable();
+            for (int id = 1; id <= index.size(); id++) {
+                String name = index.getName(id).toLowerCase(Locale.ROOT);
+                for (int i = 0; i + 3 <= name.length(); i++) {
+                    trigrams.add(trigram(name, i), id);
+                }
+                for (int length = 1; length <= 2 && length <= name.length(); length++) {
+                    prefixes.add(prefix(name, length), id);
+                }
+            }
+            trigrams.trim();
+            prefixes.trim();
+        }
+        
+        /**
+         * Finds ids of names containing the query
+         * 
+         * @param query Lower case query of at least three characters
+         * @param limit Maximal count of found ids
+         * @return Ascending ids
+         */
+        private int[] findSubstring(String query, int limit) {
+            // Get id lists of all trigrams of the query, the shortest first
+            int count = query.length() - 2;
+            int[][] lists = new int[count][];
+            for (int i = 0; i < count; i++) {
+                lists[i] = trigrams.get(trigram(query, i));
+                if (lists[i] == null) { // No name contains this trigram
+                    return new int[0];
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+            
+            // Keep ids of the shortest list, which are in all other lists and whose name really contains the query
+            int[] found = new int[lists[0].length];
+            int size = 0;
+            for (int id : lists[0]) {
+                if (size == limit) {
+                    break;
+                }
+                boolean all = true;
+                for (int i = 1; i < count && all; i++) {
+                    all = Arrays.binarySearch(lists[i], id) >= 0;
+                }
+                if (all && (count == 1 || index.getName(id).toLowerCase(Locale.ROOT).contains(query))) {
+                    found[size++] = id;
+                }
+            }
+            return Arrays.copyOf(found, size);
+        }
+        
+        /**
+         * Finds ids of names starting with the query
+         * 
+         * @param query Lower case query of one or two characters
+         * @return Ascending ids
+         */
+        private int[] findPrefix(String query) {
+            int[] found = prefixes.get(prefix(query, query.length()));
+            return found == null ? new int[0] : found;
+        }
+    }
+    
+    /**
+     * Hash table of ascending id lists by long key, without boxing of keys
+     */
+    private static class PostingsTable {
+        private long[] keys = new long[1024];
+        private int[][] ids = new int[1024][];
+        private int[] sizes = new int[1024];
+        private int count;
+        
+        /**
+         * Adds id to list of the key, if it isn't the last added id of this key
+         * 
+         * @param key Trigram or prefix key
+         * @param id Name id
+         */
+        private void add(long key, int id) {
+            if (count * 2 >= keys.length) { // Keep the table at most half full
+                resize();
+            }
+            
+            int slot = findSlot(keys, ids, key);
+            if (ids[slot] == null) { // Is it new key?
+                keys[slot] = key;
+                ids[slot] = new int[2];
+                count++;
+            } else if (ids[slot][sizes[slot] - 1] == id) { // Was the id already added?
+                return;
+            } else if (sizes[slot] == ids[slot].length) {
+                ids[slot] = Arrays.copyOf(ids[slot], sizes[slot] * 2);
+            }
+            ids[slot][sizes[slot]++] = id;
+        }
+        
+        /**
+         * Returns ids of the key
+         * 
+         * @param key Trigram or prefix key
+         * @return Ascending ids, null if no id was added for this key
+         */
+        private int[] get(long key) {
+            return ids[findSlot(keys, ids, key)];
+        }
+        
+        /**
+         * Shortens id lists to their size, called when all ids are added
+         */
+        private void trim() {
+            for (int slot = 0; slot < ids.length; slot++) {
+                if (ids[slot] != null) {
+                    ids[slot] = Arrays.copyOf(ids[slot], sizes[slot]);
+                }
+            }
+            sizes = null;
+        }
+        
+        /**
+         * Doubles size of the table
+         */
+        private void resize() {
+            long[] newKeys = new long[keys.length * 2];
+            int[][] newIds = new int[keys.length * 2][];
+            int[] newSizes = new int[keys.length * 2];
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (ids[slot] != null) {
+                    int newSlot = findSlot(newKeys, newIds, keys[slot]);
+                    newKeys[newSlot] = keys[slot];
+                    newIds[newSlot] = ids[slot];
+                    newSizes[newSlot] = sizes[slot];
+                }
+            }
+            keys = newKeys;
+            ids = newIds;
+            sizes = newSizes;
+        }
+        
+        /**
+         * Returns slot of the key, or empty slot where it belongs
+         * 
+         * @param keys Keys of the table
+         * @param ids Id lists of the table, null for empty slots
+         * @param key Searched key
+         * @return Slot index
+         */
+        private static int findSlot(long[] keys, int[][] ids, long key) {
+            int mask = keys.length - 1;
+            int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+            while (ids[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
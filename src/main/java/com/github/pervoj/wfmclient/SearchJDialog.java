@@ -0,0 +1,259 @@
+/* SearchJDialog.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JOptionPane;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * JDialog for searching files by name across all servers
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class SearchJDialog extends javax.swing.JDialog {
+    private static final String[] COLUMNS = {"Name", "Path", "Server"};
+    private static final int MAX_RESULTS = 1000;
+    
+    private FilesJFrame frame;
+    private SearchIndex index;
+    private List<SearchIndex.Match> matches;
+    private AbstractTableModel model;
+
+    /**
+     * Search JDialog constructor method
+     */
+    public SearchJDialog(FilesJFrame parent, boolean modal, SearchIndex index) {
+        super(parent, modal);
+        initComponents();
+        setLocationRelativeTo(parent);
+        this.frame = parent;
+        this.index = index;
+        matches = new ArrayList<>();
+        
+        // Set JTable model with found files
+        model = new AbstractTableModel() {
+            @Override
+            public int getRowCount() {
+                return matches.size();
+            }
+            
+            @Override
+            public int getColumnCount() {
+                return COLUMNS.length;
+            }
+            
+            @Override
+            public String getColumnName(int column) {
+                return COLUMNS[column];
+            }
+            
+            @Override
+            public Object getValueAt(int row, int column) {
+                SearchIndex.Match match = matches.get(row);
+                switch (column) {
+                    case 0:
+                        return ListingIndex.getNameFromPath(match.getPath()) + (match.getType() == ListingIndex.Type.DIRECTORY ? "/" : "");
+                    case 1:
+                        return match.getPath();
+                    default:
+                        return match.getServerName();
+                }
+            }
+        };
+        resultsJTable.setModel(model);
+        
+        // Search again after every change of searched text
+        searchJTextField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent evt) {
+                search();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent evt) {
+                search();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent evt) {
+                search();
+            }
+        });
+        search();
+    }
+    
+    /**
+     * Finds files with searched text and shows them in the table
+     */
+    private void search() {
+        matches = index.search(searchJTextField.getText(), MAX_RESULTS);
+        model.fireTableDataChanged();
+        
+        if (searchJTextField.getText().trim().isEmpty()) {
+            countJLabel.setText(index.size() + " files and directories indexed");
+        } else if (matches.size() == MAX_RESULTS) {
+            countJLabel.setText("First " + MAX_RESULTS + " results shown");
+        } else {
+            countJLabel.setText(matches.size() + " results found");
+        }
+    }
+    
+    /**
+     * Shows selected file in the file tree
+     */
+    private void showSelected() {
+        if (resultsJTable.getSelectedRow() < 0) { // If nothing was selected:
+            // Show information message
+            JOptionPane.showMessageDialog(this, "You must select one of the results!", "Error", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        SearchIndex.Match match = matches.get(resultsJTable.getSelectedRow());
+        if (!frame.showFile(match.getServerName(), match.getPath())) { // Was the server reloaded without this file?
+            JOptionPane.showMessageDialog(this, "File " + match.getPath() + " isn't in the file tree anymore!", "Error", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * This method is called from within the constructor to initialize the form.
+     * WARNING: Do NOT modify this code. The content of this method is always
+     * regenerated by the Form Editor.
+     */
+    @SuppressWarnings("unchecked")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+
+        jLabel1 = new javax.swing.JLabel();
+        searchJTextField = new javax.swing.JTextField();
+        jScrollPane1 = new javax.swing.JScrollPane();
+        resultsJTable = new javax.swing.JTable();
+        countJLabel = new javax.swing.JLabel();
+        showJButton = new javax.swing.JButton();
+        closeJButton = new javax.swing.JButton();
+
+        setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+        setTitle("Search files");
+
+        jLabel1.setText("File name:");
+
+        resultsJTable.setSelectionMode(javax.swing.ListSelectionModel.SINGLE_SELECTION);
+        resultsJTable.addMouseListener(new java.awt.event.MouseAdapter() {
+            public void mouseClicked(java.awt.event.MouseEvent evt) {
+                resultsJTableMouseClicked(evt);
+            }
+        });
+        jScrollPane1.setViewportView(resultsJTable);
+
+        showJButton.setText("Show in tree");
+        showJButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                showJButtonActionPerformed(evt);
+            }
+        });
+
+        closeJButton.setText("Close");
+        closeJButton.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                closeJButtonActionPerformed(evt);
+            }
+        });
+
+        javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
+        getContentPane().setLayout(layout);
+        layout.setHorizontalGroup(
+            layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(layout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 676, Short.MAX_VALUE)
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(jLabel1)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(searchJTextField))
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(countJLabel)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                        .addComponent(showJButton)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(closeJButton)))
+                .addContainerGap())
+        );
+        layout.setVerticalGroup(
+            layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(javax.swing.GroupLayout.Alignment.TRAILING, layout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(jLabel1)
+                    .addComponent(searchJTextField, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(jScrollPane1, javax.swing.GroupLayout.DEFAULT_SIZE, 300, Short.MAX_VALUE)
+                .addGap(18, 18, 18)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(countJLabel)
+                    .addComponent(showJButton)
+                    .addComponent(closeJButton))
+                .addContainerGap())
+        );
+
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+
+    /**
+     * Results table on click action, double click shows the file in the file tree
+     * 
+     * @param evt Mouse event
+     */
+    private void resultsJTableMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_resultsJTableMouseClicked
+        if (evt.getClickCount() == 2 && resultsJTable.getSelectedRow() >= 0) {
+            showSelected();
+        }
+    }//GEN-LAST:event_resultsJTableMouseClicked
+
+    /**
+     * Show button on click action
+     * 
+     * @param evt Action event
+     */
+    private void showJButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_showJButtonActionPerformed
+        showSelected();
+    }//GEN-LAST:event_showJButtonActionPerformed
+
+    /**
+     * Close button on click action
+     * 
+     * @param evt Action event
+     */
+    private void closeJButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_closeJButtonActionPerformed
+        dispose(); // Close dialog
+    }//GEN-LAST:event_closeJButtonActionPerformed
+
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton closeJButton;
+    private javax.swing.JLabel countJLabel;
+    private javax.swing.JLabel jLabel1;
+    private javax.swing.JScrollPane jScrollPane1;
+    private javax.swing.JTable resultsJTable;
+    private javax.swing.JTextField searchJTextField;
+    private javax.swing.JButton showJButton;
+    // End of variables declaration//GEN-END:variables
+}
@@ -0,0 +1,82 @@
+/* ServerListing.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+/**
+ * File list of WFM server together with data needed for its revalidation
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class ServerListing {
+    private String[] entries;
+    private String etag;
+    private String lastModified;
+    private String hash;
+    
+    /**
+     * Server listing constructor method
+     * 
+     * @param entries Complete array of files
+     * @param etag ETag header of API response, null if server didn't send it
+     * @param lastModified Last-Modified header of API response, null if server didn't send it
+     * @param hash Hash of API content
+     */
+    public ServerListing(String[] entries, String etag, String lastModified, String hash) {
+        this.entries = entries;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.hash = hash;
+    }
+    
+    /**
+     * Getter for complete array of files
+     * 
+     * @return Complete array of files
+     */
+    public String[] getEntries() {
+        return entries;
+    }
+    
+    /**
+     * Getter for ETag header of API response
+     * 
+     * @return ETag header, null if server didn't send it
+     */
+    public String getEtag() {
+        return etag;
+    }
+    
+    /**
+     * Getter for Last-Modified header of API response
+     * 
+     * @return Last-Modified header, null if server didn't send it
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+    
+    /**
+     * Getter for hash of API content
+     * 
+     * @return Hash of API content
+     */
+    public String getHash() {
+        return hash;
+    }
+}
@@ -0,0 +1,192 @@
+/* ServerMetrics.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
+
+/**
+ * Performance metrics of one server
+ *
+ * Metrics of every server are registered as MBean
+ * "com.github.pervoj.wfmclient:type=ServerMetrics,name=URL", so they can be
+ * watched in JConsole or other JMX client.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+    private static final ConcurrentHashMap<String, ServerMetrics> SERVERS = new ConcurrentHashMap<>();
+    
+    private String serverUrl;
+    private volatile Histogram listingFetch;
+    private volatile Histogram parse;
+    private volatile Histogram build;
+    private volatile Histogram downloadThroughput;
+    private AtomicLong listingBytes;
+    private AtomicLong downloadBytes;
+    private AtomicLong errors;
+    
+    /**
+     * Server metrics constructor method
+     * 
+     * @param serverUrl WFM server URL
+     */
+    private ServerMetrics(String serverUrl) {
+        this.serverUrl = serverUrl;
+        listingBytes = new AtomicLong();
+        downloadBytes = new AtomicLong();
+        errors = new AtomicLong();
+        reset();
+    }
+    
+    /**
+     * Returns metrics of server, they are created and registered on first use
+     * 
+     * @param serverUrl WFM server URL
+     * @return Metrics of the server
+     */
+    public static ServerMetrics get(String serverUrl) {
+        return SERVERS.computeIfAbsent(serverUrl, url -> {
+            ServerMetrics metrics = new ServerMetrics(url);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                        new ObjectName("com.github.pervoj.wfmclient:type=ServerMetrics,name=" + ObjectName.quote(url)));
+            } catch (Exception e) {
+                // Metrics are still shown in the application
+            }
+            return metrics;
+        });
+    }
+    
+    /**
+     * Returns metrics of all servers, which were used
+     * 
+     * @return Metrics sorted by server URL
+     */
+    public static List<ServerMetrics> getAll() {
+        ArrayList<ServerMetrics> all = new ArrayList<>(SERVERS.values());
+        Collections.sort(all, (a, b) -> a.serverUrl.compareTo(b.serverUrl));
+        return all;
+    }
+    
+    /**
+     * Records time from sending file list request to response
+     * 
+     * @param nanos Duration in nanoseconds
+     */
+    public void recordListingFetch(long nanos) {
+        listingFetch.record(nanos / 1000);
+    }
+    
+    /**
+     * Records time of reading and parsing file list
+     * 
+     * @param nanos Duration in nanoseconds
+     * @param bytes Count of received bytes
+     */
+    public void recordParse(long nanos, long bytes) {
+        parse.record(nanos / 1000);
+        listingBytes.addAndGet(bytes);
+    }
+    
+    /**
+     * Records time of building file list index
+     * 
+     * @param nanos Duration in nanoseconds
+     */
+    public void recordBuild(long nanos) {
+        build.record(nanos / 1000);
+    }
+    
+    /**
+     * Records finished download
+     * 
+     * @param nanos Duration in nanoseconds
+     * @param bytes Count of downloaded bytes
+     */
+    public void recordDownload(long nanos, long bytes) {
+        downloadBytes.addAndGet(bytes);
+        if (nanos > 0) {
+            downloadThroughput.record((long) (bytes * 1e9 / 1024 / nanos)); // Count in double, bytes of large files times 10^9 don't fit to long
+        }
+    }
+    
+    /**
+     * Records failed request or download
+     */
+    public void recordError() {
+        errors.incrementAndGet();
+    }
+    
+    @Override
+    public String getServerUrl() {
+        return serverUrl;
+    }
+    
+    @Override
+    public Histogram.Snapshot getListingFetchMicros() {
+        return listingFetch.getSnapshot();
+    }
+    
+    @Override
+    public Histogram.Snapshot getParseMicros() {
+        return parse.getSnapshot();
+    }
+    
+    @Override
+    public Histogram.Snapshot getBuildMicros() {
+        return build.getSnapshot();
+    }
+    
+    @Override
+    public Histogram.Snapshot getDownloadKilobytesPerSecond() {
+        return downloadThroughput.getSnapshot();
+    }
+    
+    @Override
+    public long getListingBytes() {
+        return listingBytes.get();
+    }
+    
+    @Override
+    public long getDownloadBytes() {
+        return downloadBytes.get();
+    }
+    
+    @Override
+    public long getErrors() {
+        return errors.get();
+    }
+    
+    @Override
+    public void reset() {
+        listingFetch = new Histogram();
+        parse = new Histogram();
+        build = new Histogram();
+        downloadThroughput = new Histogram();
+        listingBytes.set(0);
+        downloadBytes.set(0);
+        errors.set(0);
+    }
+}
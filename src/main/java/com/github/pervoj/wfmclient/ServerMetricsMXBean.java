@@ -0,0 +1,87 @@
+/* ServerMetricsMXBean.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+/**
+ * JMX interface of performance metrics of one server
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public interface ServerMetricsMXBean {
+    /**
+     * Getter for server URL
+     * 
+     * @return WFM server URL
+     */
+    String getServerUrl();
+    
+    /**
+     * Getter for times from sending file list request to response
+     * 
+     * @return Histogram of file list fetch latency in microseconds
+     */
+    Histogram.Snapshot getListingFetchMicros();
+    
+    /**
+     * Getter for times of reading and parsing file lists
+     * 
+     * @return Histogram of parse time in microseconds
+     */
+    Histogram.Snapshot getParseMicros();
+    
+    /**
+     * Getter for times of building file list indexes
+     * 
+     * @return Histogram of build time in microseconds
+     */
+    Histogram.Snapshot getBuildMicros();
+    
+    /**
+     * Getter for speeds of finished downloads
+     * 
+     * @return Histogram of download throughput in kilobytes per second
+     */
+    Histogram.Snapshot getDownloadKilobytesPerSecond();
+    
+    /**
+     * Getter for received bytes of file lists
+     * 
+     * @return Count of received bytes
+     */
+    long getListingBytes();
+    
+    /**
+     * Getter for downloaded bytes of files
+     * 
+     * @return Count of downloaded bytes
+     */
+    long getDownloadBytes();
+    
+    /**
+     * Getter for count of failed requests and downloads
+     * 
+     * @return Count of errors
+     */
+    long getErrors();
+    
+    /**
+     * Clears all metrics
+     */
+    void reset();
+}
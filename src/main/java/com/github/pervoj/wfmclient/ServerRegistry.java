@@ -0,0 +1,248 @@
+/* ServerRegistry.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * List of saved servers, which is kept in memory and written to server list file on every change
+ *
+ * The file has one "name///url" line per server, sorted by name. It is read
+ * only once, changes are written as a whole new file, which replaces the old
+ * one at once. Servers are held in one snapshot, which doesn't change, every
+ * change replaces the whole snapshot, so it can be read from any thread.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class ServerRegistry {
+    private static final String SEPARATOR = "///";
+    
+    private File file;
+    private volatile Snapshot snapshot;
+    
+    /**
+     * Registry constructor method, the registry is empty until it is loaded
+     * 
+     * @param file Server list file
+     */
+    public ServerRegistry(File file) {
+        this.file = file;
+        snapshot = new Snapshot(new ArrayList<>(), new HashMap<>());
+    }
+    
+    /**
+     * Reads servers from server list file, lines which aren't valid are left out
+     * 
+     * @throws Exception when reading file fails
+     */
+    public synchronized void load() throws Exception {
+        ArrayList<Server> servers = new ArrayList<>();
+        HashMap<String, Server> names = new HashMap<>();
+        if (file.exists()) {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String s;
+                while ((s = br.readLine()) != null) {
+                    String[] parts = s.split(SEPARATOR);
+                    if (parts.length == 2 && !names.containsKey(parts[0])) { // Skip damaged lines and repeated names
+                        Server server = new Server(parts[0], parts[1]);
+                        names.put(server.getName(), server);
+                        servers.add(server);
+                    }
+                }
+            }
+        }
+        snapshot = new Snapshot(servers, names); // Both lists are replaced at once
+    }
+    
+    /**
+     * Returns saved server
+     * 
+     * @param name Server name
+     * @return Server, null if there is no server with this name
+     */
+    public Server get(String name) {
+        return snapshot.byName.get(name);
+    }
+    
+    /**
+     * Is there a server with this name?
+     * 
+     * @param name Server name
+     * @return true - name is taken, false - name is free
+     */
+    public boolean contains(String name) {
+        return snapshot.byName.containsKey(name);
+    }
+    
+    /**
+     * Returns all servers sorted by name
+     * 
+     * @return Unmodifiable list of servers, which doesn't change when registry changes
+     */
+    public List<Server> getServers() {
+        return snapshot.sorted;
+    }
+    
+    /**
+     * Adds server and saves server list file
+     * 
+     * @param name Server name
+     * @param url WFM server URL
+     * @return Added server
+     * @throws Exception when server name is taken or invalid, or writing to file fails
+     */
+    public synchronized Server add(String name, String url) throws Exception {
+        Snapshot current = snapshot;
+        if (current.byName.containsKey(name)) {
+            throw new Exception("Server name " + name + " is already taken!");
+        }
+        if (name.contains(SEPARATOR) || url.contains(SEPARATOR) || name.contains("\n") || url.contains("\n")) {
+            throw new Exception("Server name and URL can't contain \"" + SEPARATOR + "\" or line breaks!");
+        }
+        
+        Server server = new Server(name, url);
+        ArrayList<Server> servers = new ArrayList<>(current.sorted);
+        servers.add(server);
+        HashMap<String, Server> names = new HashMap<>(current.byName);
+        names.put(name, server);
+        
+        save(servers);
+        snapshot = new Snapshot(servers, names); // Both lists are replaced at once
+        return server;
+    }
+    
+    /**
+     * Removes server and saves server list file
+     * 
+     * @param name Server name
+     * @return Removed server, null if there was no server with this name
+     * @throws Exception when writing to file fails
+     */
+    public synchronized Server remove(String name) throws Exception {
+        Snapshot current = snapshot;
+        Server server = current.byName.get(name);
+        if (server == null) {
+            return null;
+        }
+        
+        ArrayList<Server> servers = new ArrayList<>(current.sorted);
+        servers.remove(server);
+        HashMap<String, Server> names = new HashMap<>(current.byName);
+        names.remove(name);
+        
+        save(servers);
+        snapshot = new Snapshot(servers, names); // Both lists are replaced at once
+        return server;
+    }
+    
+    /**
+     * Writes servers to server list file, the file is replaced at once
+     * 
+     * @param servers Servers to save
+     * @throws Exception when writing to file fails
+     */
+    private void save(ArrayList<Server> servers) throws Exception {
+        servers.sort(Comparator.comparing(Server::getName));
+        
+        // Write whole list to temporary file
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        StringBuilder content = new StringBuilder();
+        for (Server server : servers) {
+            content.append(server.getName()).append(SEPARATOR).append(server.getUrl()).append(System.lineSeparator());
+        }
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            bw.write(content.toString());
+            bw.flush();
+        }
+        
+        // Replace server list file with temporary file
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Servers sorted by name and servers by name, which are replaced together
+     */
+    private static class Snapshot {
+        private final List<Server> sorted;
+        private final HashMap<String, Server> byName;
+        
+        /**
+         * Snapshot constructor method, lists mustn't be changed after that
+         * 
+         * @param servers Servers in any order
+         * @param byName The same servers by name
+         */
+        public Snapshot(ArrayList<Server> servers, HashMap<String, Server> byName) {
+            servers.sort(Comparator.comparing(Server::getName));
+            this.sorted = Collections.unmodifiableList(servers);
+            this.byName = byName;
+        }
+    }
+    
+    /**
+     * Saved WFM server
+     */
+    public static class Server {
+        private String name;
+        private String url;
+        
+        /**
+         * Server constructor method
+         * 
+         * @param name Server name
+         * @param url WFM server URL
+         */
+        public Server(String name, String url) {
+            this.name = name;
+            this.url = url;
+        }
+        
+        /**
+         * Getter for server name
+         * 
+         * @return Server name
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Getter for WFM server URL
+         * 
+         * @return WFM server URL
+         */
+        public String getUrl() {
+            return url;
+        }
+    }
+}
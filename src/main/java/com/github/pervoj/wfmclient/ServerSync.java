@@ -0,0 +1,245 @@
+/* ServerSync.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class for incremental synchronization of server to local directory
+ *
+ * Only new and changed files are downloaded, the versions of downloaded files
+ * are recorded in {@link SyncManifest} of the local directory.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class ServerSync {
+    private DownloadQueue queue;
+    private int checkThreads;
+    private boolean deleteRemoved;
+    private boolean verifyHashes;
+    
+    /**
+     * Server synchronization constructor method
+     * 
+     * @param queue Download queue, which downloads the files
+     * @param checkThreads Count of parallel requests checking file versions
+     * @param deleteRemoved Delete local files, which were removed from server
+     * @param verifyHashes Record hashes of downloaded files and download again files, which were changed locally
+     */
+    public ServerSync(DownloadQueue queue, int checkThreads, boolean deleteRemoved, boolean verifyHashes) {
+        this.queue = queue;
+        this.checkThreads = checkThreads;
+        this.deleteRemoved = deleteRemoved;
+        this.verifyHashes = verifyHashes;
+    }
+    
+    /**
+     * Synchronizes whole server to local directory and waits until it is done
+     * 
+     * @param index Index of server file list
+     * @param serverName Server name
+     * @param serverUrl WFM server URL
+     * @param serverDir Local directory for files of this server
+     * @return Result of synchronization
+     * @throws Exception when local directory or manifest can't be used
+     */
+    public Result sync(ListingIndex index, String serverName, String serverUrl, File serverDir) throws Exception {
+        if (!serverDir.isDirectory() && !serverDir.mkdirs()) {
+            throw new Exception("Directory " + serverDir.getAbsolutePath() + " can't be created!");
+        }
+        
+        SyncManifest manifest = new SyncManifest(serverDir);
+        Result result = new Result();
+        HashSet<String> remoteFiles = new HashSet<>();
+        
+        // Collect all files of server
+        ArrayList<String> files = new ArrayList<>();
+        ArrayDeque<String> directories = new ArrayDeque<>();
+        directories.add("");
+        while (!directories.isEmpty()) {
+            for (String child : index.getChildren(directories.poll())) {
+                if (DirectoryDownloader.getLocalFile(serverDir, child) == null) { // Don't let server write outside of local directory
+                    result.failed++;
+                    continue;
+                }
+                
+                if (index.getType(child) == ListingIndex.Type.DIRECTORY) {
+                    directories.add(child);
+                } else {
+                    files.add(child);
+                    remoteFiles.add(child);
+                }
+            }
+        }
+        
+        ExecutorService checkExecutor = Executors.newFixedThreadPool(checkThreads, r -> {
+            Thread t = new Thread(r, "sync-checker");
+            t.setDaemon(true);
+            return t;
+        });
+        
+        ArrayList<DownloadJob> jobs = new ArrayList<>();
+        try {
+            // Check versions of all files in parallel, changed files start downloading at once
+            ArrayList<Future<DownloadJob>> checks = new ArrayList<>();
+            for (String path : files) {
+                checks.add(checkExecutor.submit(() -> check(index, manifest, serverName, serverUrl, path, serverDir)));
+            }
+            for (Future<DownloadJob> check : checks) {
+                DownloadJob job = check.get();
+                if (job == null) {
+                    result.unchanged++;
+                } else {
+                    jobs.add(job);
+                }
+            }
+            
+            // Remove files, which aren't on server anymore
+            for (String path : manifest.getPaths()) {
+                if (!remoteFiles.contains(path) && deleteRemoved) {
+                    File local = DirectoryDownloader.getLocalFile(serverDir, path);
+                    if (local == null || !local.exists() || local.delete()) { // Files outside of local directory are only forgotten
+                        manifest.remove(path);
+                        result.deleted++;
+                    }
+                }
+            }
+            
+            // Wait for downloads
+            for (DownloadJob job : jobs) {
+                job.waitFor();
+                if (job.getState() == DownloadJob.State.FINISHED) {
+                    result.downloaded++;
+                } else if (job.getState() == DownloadJob.State.FAILED) {
+                    result.failed++;
+                }
+            }
+        } finally {
+            checkExecutor.shutdownNow();
+            for (DownloadJob job : jobs) { // Sync was interrupted, don't leave its downloads in queue
+                if (!job.isDone()) {
+                    queue.cancel(job);
+                }
+            }
+            manifest.save(); // Save also partial progress, finished files won't be downloaded again
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Compares file on server with manifest and adds it to download queue, if it is new or changed
+     * 
+     * @param index Index of server file list
+     * @param manifest Manifest of local directory
+     * @param serverName Server name
+     * @param serverUrl WFM server URL
+     * @param path File path
+     * @param serverDir Local directory for files of this server
+     * @return Added download, null if file is up to date
+     * @throws Exception when local directory can't be created
+     */
+    private DownloadJob check(ListingIndex index, SyncManifest manifest, String serverName, String serverUrl, String path, File serverDir) throws Exception {
+        File local = DirectoryDownloader.getLocalFile(serverDir, path); // Path was already checked
+        FileInfo recorded = manifest.get(path);
+        
+        // Get current version from server, unknown version means the file is downloaded
+        FileInfo remote;
+        try {
+            remote = new ApiParser().getFileInfo(ApiParser.getFileUrl(serverUrl, path));
+        } catch (Exception e) {
+            remote = null;
+        }
+        
+        if (remote != null && remote.isSameVersion(recorded) && local.isFile() && local.length() == recorded.getSize()
+                && (!verifyHashes || recorded.getHash() == null || recorded.getHash().equals(SyncManifest.hashFile(local)))) {
+            return null;
+        }
+        
+        File parent = local.getParentFile();
+        synchronized (this) {
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new Exception("Directory " + parent.getAbsolutePath() + " can't be created!");
+            }
+        }
+        
+        FileInfo version = remote;
+        return queue.add(new DownloadJob(serverName, serverUrl, path, local, DownloadJob.Priority.BULK,
+                index, job -> {
+                    if (version == null) { // Version is unknown, file will be checked again next time
+                        manifest.remove(path);
+                        return;
+                    }
+                    manifest.put(path, new FileInfo(version.getSize(), version.getLastModified(), version.getEtag(),
+                            verifyHashes ? SyncManifest.hashFile(local) : null));
+                }));
+    }
+    
+    /**
+     * Result of synchronization
+     */
+    public static class Result {
+        private int downloaded;
+        private int unchanged;
+        private int deleted;
+        private int failed;
+        
+        /**
+         * Getter for count of downloaded files
+         * 
+         * @return Count of new or changed files, which were downloaded
+         */
+        public int getDownloaded() {
+            return downloaded;
+        }
+        
+        /**
+         * Getter for count of unchanged files
+         * 
+         * @return Count of files, which were up to date
+         */
+        public int getUnchanged() {
+            return unchanged;
+        }
+        
+        /**
+         * Getter for count of deleted files
+         * 
+         * @return Count of local files deleted, because they were removed from server
+         */
+        public int getDeleted() {
+            return deleted;
+        }
+        
+        /**
+         * Getter for count of failed downloads
+         * 
+         * @return Count of files, which couldn't be downloaded or whose path leads outside of local directory
+         */
+        public int getFailed() {
+            return failed;
+        }
+    }
+}
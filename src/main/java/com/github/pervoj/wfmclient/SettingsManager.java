@@ -26,6 +26,7 @@ import java.io.FileOutputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.Properties;
 
 /**
  * Class for loading configuration
@@ -36,6 +37,9 @@ public class SettingsManager {
     private File configDir;
     private File serverList;
     private File downloadDir;
+    private File settings;
+    private File cacheDir;
+    private Properties properties;
     
     /**
      * Settings loader class constructor method
@@ -68,6 +72,21 @@ public class SettingsManager {
         if (!new File(getDownloadDir()).exists()) {
             new File(getDownloadDir()).mkdirs();
         }
+        
+        // Set directory for cached server file lists
+        cacheDir = new File(configDir.getAbsolutePath() + File.separator + "cache");
+        if (!cacheDir.exists()) {
+            cacheDir.mkdirs();
+        }
+        
+        // Set settings file and load it, missing values use defaults
+        settings = new File(configDir.getAbsolutePath() + File.separator + "settings");
+        properties = new Properties();
+        if (settings.exists()) {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(settings), StandardCharsets.UTF_8))) {
+                properties.load(br);
+            }
+        }
     }
     
     /**
@@ -108,6 +127,139 @@ public class SettingsManager {
         }
     }
     
+    /**
+     * Getter for directory with cached server file lists
+     * 
+     * @return Directory with cached server file lists File
+     */
+    public File getCacheDir() {
+        return cacheDir;
+    }
+    
+    /**
+     * Getter for settings file
+     * 
+     * @return Settings file File
+     */
+    public File getSettingsFile() {
+        return settings;
+    }
+    
+    /**
+     * Getter for count of servers loaded at the same time
+     * 
+     * @return Count of servers loaded at the same time
+     */
+    public int getLoadThreads() {
+        return getIntSetting("load-threads", 4);
+    }
+    
+    /**
+     * Getter for time for which server check result is remembered
+     * 
+     * @return Check time to live in seconds
+     */
+    public int getCheckTtl() {
+        return getIntSetting("check-api-ttl", 600);
+    }
+    
+    /**
+     * Getter for time for opening connection to server
+     * 
+     * @return Connect timeout in seconds
+     */
+    public int getConnectTimeout() {
+        return getIntSetting("connect-timeout", 10);
+    }
+    
+    /**
+     * Getter for time for waiting for server response, it limits also every wait for next data of downloaded file
+     * 
+     * @return Read timeout in seconds
+     */
+    public int getReadTimeout() {
+        return getIntSetting("read-timeout", 30);
+    }
+    
+    /**
+     * Getter for count of files downloaded at the same time
+     * 
+     * @return Count of files downloaded at the same time
+     */
+    public int getDownloadThreads() {
+        return getIntSetting("download-threads", 4);
+    }
+    
+    /**
+     * Getter for count of connections to one server used by downloads at the same time, parts of files count too
+     * 
+     * @return Count of connections to one server used by downloads at the same time
+     */
+    public int getDownloadThreadsPerServer() {
+        return getIntSetting("download-threads-per-server", 2);
+    }
+    
+    /**
+     * Getter for maximal count of parts of one file downloaded at the same time
+     * 
+     * @return Count of parts, 1 downloads every file in one stream
+     */
+    public int getDownloadSegments() {
+        return getIntSetting("download-segments", 4);
+    }
+    
+    /**
+     * Getter for minimal size of one part of downloaded file
+     * 
+     * @return Minimal part size in kilobytes
+     */
+    public int getMinSegmentSize() {
+        return getIntSetting("download-segment-min-size", 8 * 1024);
+    }
+    
+    /**
+     * Should downloaded files be transferred compressed, if server supports it?
+     * 
+     * @return true - files are downloaded compressed in one stream, false - files are downloaded as they are
+     */
+    public boolean isDownloadCompression() {
+        return Boolean.parseBoolean(properties.getProperty("download-compression", "false").trim());
+    }
+    
+    /**
+     * Getter for count of files checked at the same time during synchronization
+     * 
+     * @return Count of parallel requests checking file versions
+     */
+    public int getSyncCheckThreads() {
+        return getIntSetting("sync-check-threads", 8);
+    }
+    
+    /**
+     * Should synchronization record hashes of downloaded files and check local files with them?
+     * 
+     * @return true - hashes are checked, false - only sizes and versions are checked
+     */
+    public boolean isSyncVerifyHashes() {
+        return Boolean.parseBoolean(properties.getProperty("sync-verify-hashes", "false").trim());
+    }
+    
+    /**
+     * Returns positive integer value from settings file
+     * 
+     * @param key Setting name
+     * @param defaultValue Value used when setting is missing or invalid
+     * @return Setting value
+     */
+    private int getIntSetting(String key, int defaultValue) {
+        try {
+            int value = Integer.parseInt(properties.getProperty(key, "").trim());
+            return value > 0 ? value : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+    
     /**
      * Getter for AppData directory path for this app
      * 
@@ -0,0 +1,181 @@
+/* SyncManifest.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Manifest of files synchronized from server to local directory
+ *
+ * The manifest is saved in the local directory of the server, one file per
+ * line as size, Last-Modified, ETag, hash and path separated by tabs.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class SyncManifest {
+    public static final String FILE_NAME = ".wfm-manifest";
+    
+    private File file;
+    private HashMap<String, FileInfo> files;
+    
+    /**
+     * Manifest constructor method, loads manifest from local directory
+     * 
+     * @param serverDir Local directory for files of server
+     * @throws Exception when manifest exists, but it can't be read
+     */
+    public SyncManifest(File serverDir) throws Exception {
+        file = new File(serverDir, FILE_NAME);
+        files = new HashMap<>();
+        
+        if (!file.exists()) {
+            return;
+        }
+        
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String s;
+            while ((s = br.readLine()) != null) {
+                String[] parts = s.split("\t", 5);
+                if (parts.length != 5) { // Skip damaged line, the file will be downloaded again
+                    continue;
+                }
+                
+                try {
+                    files.put(parts[4], new FileInfo(Long.parseLong(parts[0]), emptyToNull(parts[1]), emptyToNull(parts[2]), emptyToNull(parts[3])));
+                } catch (NumberFormatException e) {
+                    // Skip line with damaged size, the file will be downloaded again
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns recorded info about file
+     * 
+     * @param path File path on server
+     * @return Info about file, null if file isn't in manifest
+     */
+    public synchronized FileInfo get(String path) {
+        return files.get(path);
+    }
+    
+    /**
+     * Records info about synchronized file
+     * 
+     * @param path File path on server
+     * @param info Info about downloaded version of file
+     */
+    public synchronized void put(String path, FileInfo info) {
+        files.put(path, info);
+    }
+    
+    /**
+     * Removes file from manifest
+     * 
+     * @param path File path on server
+     */
+    public synchronized void remove(String path) {
+        files.remove(path);
+    }
+    
+    /**
+     * Returns paths of all files in manifest
+     * 
+     * @return Copy of file paths
+     */
+    public synchronized Set<String> getPaths() {
+        return new HashSet<>(files.keySet());
+    }
+    
+    /**
+     * Saves manifest, the manifest file is replaced at once
+     * 
+     * @throws Exception when writing to file fails
+     */
+    public synchronized void save() throws Exception {
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        
+        // Write files to temporary file
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            for (String path : files.keySet()) {
+                FileInfo info = files.get(path);
+                bw.write(info.getSize() + "\t" + nullToEmpty(info.getLastModified()) + "\t" + nullToEmpty(info.getEtag()) + "\t"
+                        + nullToEmpty(info.getHash()) + "\t" + path);
+                bw.newLine();
+            }
+            bw.flush();
+        }
+        
+        // Replace manifest with temporary file
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Counts SHA-256 hash of local file
+     * 
+     * @param file Local file
+     * @return Hash as hexadecimal number
+     * @throws Exception when file can't be read
+     */
+    public static String hashFile(File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (FileInputStream fis = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int count;
+            while ((count = fis.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+    
+    /**
+     * Converts empty string from manifest to null
+     * 
+     * @param s String from manifest
+     * @return The string or null, if it is empty
+     */
+    private static String emptyToNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+    
+    /**
+     * Converts null to empty string for manifest
+     * 
+     * @param s String to write
+     * @return The string or empty string, if it is null
+     */
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
@@ -0,0 +1,369 @@
+/* WfmCli.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line interface for scripts and computers without display
+ *
+ * Uses only classes without AWT and Swing, so it starts without graphical
+ * environment and loads less classes than the window.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class WfmCli {
+    private static final String USAGE = "Usage: java -cp wfm-client.jar com.github.pervoj.wfmclient.WfmCli <command> [arguments]\n"
+            + "\n"
+            + "Commands:\n"
+            + "  servers                      List saved servers\n"
+            + "  tree <server> [path]         Print files of server or its directory\n"
+            + "  type <server> <path>         Print type and URL of file or directory\n"
+            + "  search <text>                Find files and directories of all servers by name\n"
+            + "  download <server> <path>...  Download files and directories to download directory\n"
+            + "  sync <server> [--delete]     Download new and changed files of server,\n"
+            + "                               --delete removes files removed from server";
+    
+    private SettingsManager config;
+    private ListingCache listingCache;
+    private PrintWriter out;
+    
+    /**
+     * Command line interface constructor method
+     * 
+     * @throws Exception when loading settings fails
+     */
+    public WfmCli() throws Exception {
+        config = new SettingsManager();
+        listingCache = new ListingCache(config.getCacheDir());
+        out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        
+        HttpTransport.configure(config.getConnectTimeout() * 1000L, config.getReadTimeout() * 1000L);
+        ApiParser.setCheckTtl(config.getCheckTtl() * 1000L);
+        ApiParser.setDownloadSegments(config.getDownloadSegments(), config.getMinSegmentSize() * 1024L);
+        ApiParser.setDownloadCompression(config.isDownloadCompression());
+    }
+    
+    /**
+     * Runs command
+     * 
+     * @param args Command and its arguments
+     * @return Exit code, 0 - success, 1 - command failed, 2 - wrong arguments
+     * @throws Exception when something went wrong
+     */
+    public int run(String[] args) throws Exception {
+        try {
+            switch (args.length == 0 ? "" : args[0]) {
+                case "servers":
+                    return servers();
+                case "tree":
+                    return args.length < 2 ? usage() : tree(args[1], args.length > 2 ? args[2] : "");
+                case "type":
+                    return args.length != 3 ? usage() : type(args[1], args[2]);
+                case "search":
+                    return args.length != 2 ? usage() : search(args[1]);
+                case "download":
+                    return args.length < 3 ? usage() : download(args[1], List.of(args).subList(2, args.length));
+                case "sync":
+                    if (args.length == 2 || (args.length == 3 && args[2].equals("--delete"))) {
+                        return sync(args[1], args.length == 3);
+                    }
+                    return usage();
+                default:
+                    return usage();
+            }
+        } finally {
+            out.flush();
+        }
+    }
+    
+    /**
+     * Prints saved servers
+     * 
+     * @return Exit code
+     * @throws Exception when server list can't be read
+     */
+    private int servers() throws Exception {
+        for (ServerRegistry.Server server : readServers().getServers()) {
+            out.println(server.getName() + "\t" + server.getUrl());
+        }
+        return 0;
+    }
+    
+    /**
+     * Prints files of server or its directory
+     * 
+     * @param serverName Server name
+     * @param path Directory path
+     * @return Exit code
+     * @throws Exception when server can't be loaded
+     */
+    private int tree(String serverName, String path) throws Exception {
+        ListingIndex index = loadIndex(getServerUrl(serverName));
+        path = normalizePath(path);
+        checkPath(index, serverName, path);
+        
+        out.println(path.isEmpty() ? serverName : path);
+        printChildren(index, path, "  ");
+        return 0;
+    }
+    
+    /**
+     * Prints subfiles (subdirectories) of directory and their subfiles
+     * 
+     * @param index Index of server file list
+     * @param path Directory path
+     * @param indent Indentation of this level
+     */
+    private void printChildren(ListingIndex index, String path, String indent) {
+        for (String child : index.getChildren(path)) {
+            boolean directory = index.getType(child) == ListingIndex.Type.DIRECTORY;
+            out.println(indent + ListingIndex.getNameFromPath(child) + (directory ? "/" : ""));
+            printChildren(index, child, indent + "  ");
+        }
+    }
+    
+    /**
+     * Prints type and URL of file or directory
+     * 
+     * @param serverName Server name
+     * @param path File (directory) path
+     * @return Exit code
+     * @throws Exception when server can't be loaded
+     */
+    private int type(String serverName, String path) throws Exception {
+        String serverUrl = getServerUrl(serverName);
+        ListingIndex index = loadIndex(serverUrl);
+        path = normalizePath(path);
+        checkPath(index, serverName, path);
+        
+        ListingIndex.Type type = index.getType(path);
+        if (type == ListingIndex.Type.UNKNOWN) { // Ask server, if it can't be known from file list
+            type = new ApiParser().isFile(serverUrl, path.replaceAll(" ", "%20")) ? ListingIndex.Type.FILE : ListingIndex.Type.DIRECTORY;
+            index.setType(path, type);
+        }
+        
+        out.println(type.toString().toLowerCase() + "\t" + ApiParser.getFileUrl(serverUrl, path));
+        return 0;
+    }
+    
+    /**
+     * Prints files and directories of all servers whose name contains the text
+     * 
+     * @param query Searched text
+     * @return Exit code
+     * @throws Exception when server list can't be read
+     */
+    private int search(String query) throws Exception {
+        SearchIndex searchIndex = new SearchIndex();
+        int failed = 0;
+        for (ServerRegistry.Server server : readServers().getServers()) {
+            try {
+                searchIndex.put(server.getName(), loadIndex(server.getUrl()));
+            } catch (Exception e) {
+                System.err.println("Server " + server.getName() + " skipped: " + e.getMessage());
+                failed++;
+            }
+        }
+        
+        for (SearchIndex.Match match : searchIndex.search(query, Integer.MAX_VALUE)) {
+            out.println(match.getServerName() + "\t" + match.getPath() + (match.getType() == ListingIndex.Type.DIRECTORY ? "/" : ""));
+        }
+        return failed == 0 ? 0 : 1;
+    }
+    
+    /**
+     * Downloads files and directories and waits until they are downloaded
+     * 
+     * @param serverName Server name
+     * @param paths File (directory) paths
+     * @return Exit code
+     * @throws Exception when server can't be loaded
+     */
+    private int download(String serverName, List<String> paths) throws Exception {
+        String serverUrl = getServerUrl(serverName);
+        ListingIndex index = loadIndex(serverUrl);
+        File serverDir = new File(config.getDownloadDir() + File.separator + serverName);
+        
+        // Add all files to download queue
+        DirectoryDownloader downloader = new DirectoryDownloader(createQueue());
+        ArrayList<DownloadJob> jobs = new ArrayList<>();
+        for (String path : paths) {
+            path = normalizePath(path);
+            checkPath(index, serverName, path);
+            jobs.addAll(downloader.download(index, serverName, serverUrl, path, serverDir));
+        }
+        
+        // Wait for downloads
+        int failed = 0;
+        for (DownloadJob job : jobs) {
+            job.waitFor();
+            if (job.getState() == DownloadJob.State.FINISHED) {
+                out.println("Downloaded " + job.getFilePath());
+            } else if (job.getState() == DownloadJob.State.FAILED) {
+                out.println("Failed " + job.getFilePath() + ": " + job.getError().getMessage());
+                failed++;
+            }
+            out.flush();
+        }
+        
+        out.println(jobs.size() - failed + " of " + jobs.size() + " files downloaded to " + serverDir.getAbsolutePath());
+        return failed == 0 ? 0 : 1;
+    }
+    
+    /**
+     * Synchronizes server to download directory
+     * 
+     * @param serverName Server name
+     * @param deleteRemoved Delete local files, which were removed from server
+     * @return Exit code
+     * @throws Exception when server can't be loaded or synchronized
+     */
+    private int sync(String serverName, boolean deleteRemoved) throws Exception {
+        String serverUrl = getServerUrl(serverName);
+        ListingIndex index = loadIndex(serverUrl);
+        File serverDir = new File(config.getDownloadDir() + File.separator + serverName);
+        
+        ServerSync.Result result = new ServerSync(createQueue(), config.getSyncCheckThreads(), deleteRemoved, config.isSyncVerifyHashes())
+                .sync(index, serverName, serverUrl, serverDir);
+        
+        out.println("Downloaded: " + result.getDownloaded());
+        out.println("Unchanged: " + result.getUnchanged());
+        out.println("Deleted: " + result.getDeleted());
+        out.println("Failed: " + result.getFailed());
+        return result.getFailed() == 0 ? 0 : 1;
+    }
+    
+    /**
+     * Prints usage
+     * 
+     * @return Exit code for wrong arguments
+     */
+    private int usage() {
+        System.err.println(USAGE);
+        return 2;
+    }
+    
+    /**
+     * Creates download queue with limits from settings
+     * 
+     * @return Download queue
+     */
+    private DownloadQueue createQueue() {
+        return new DownloadQueue(config.getDownloadThreads(), config.getDownloadThreadsPerServer());
+    }
+    
+    /**
+     * Loads file list of server, cached file list is used if it didn't change
+     * 
+     * @param serverUrl WFM server URL
+     * @return Index of server file list
+     * @throws Exception when on URL isn't WFM server or something went wrong
+     */
+    private ListingIndex loadIndex(String serverUrl) throws Exception {
+        ServerListing cached = listingCache.load(serverUrl);
+        ServerListing listing = new ApiParser().getListing(serverUrl, cached);
+        if (listing != cached) { // Did file list change?
+            try {
+                listingCache.save(serverUrl, listing);
+            } catch (Exception e) {
+                // File list will be loaded from server next time
+            }
+        }
+        return new ApiParser().buildIndex(serverUrl, listing.getEntries());
+    }
+    
+    /**
+     * Reads saved servers
+     * 
+     * @return Registry of saved servers
+     * @throws Exception when server list can't be read
+     */
+    private ServerRegistry readServers() throws Exception {
+        ServerRegistry servers = new ServerRegistry(config.getServerListFile());
+        servers.load();
+        return servers;
+    }
+    
+    /**
+     * Returns URL of saved server
+     * 
+     * @param serverName Server name
+     * @return WFM server URL
+     * @throws Exception when there is no such server
+     */
+    private String getServerUrl(String serverName) throws Exception {
+        ServerRegistry.Server server = readServers().get(serverName);
+        if (server == null) {
+            throw new Exception("Server " + serverName + " doesn't exist!");
+        }
+        return server.getUrl();
+    }
+    
+    /**
+     * Checks if path is in file list of server
+     * 
+     * @param index Index of server file list
+     * @param serverName Server name
+     * @param path File (directory) path
+     * @throws Exception when there is no such path
+     */
+    private void checkPath(ListingIndex index, String serverName, String path) throws Exception {
+        if (!index.contains(path)) {
+            throw new Exception("Path " + path + " doesn't exist on server " + serverName + "!");
+        }
+    }
+    
+    /**
+     * Converts path from command line to path in file list
+     * 
+     * @param path Path with or without leading and trailing slash
+     * @return Path without leading and trailing slash
+     */
+    private static String normalizePath(String path) {
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+    
+    /**
+     * Main method
+     * 
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        int code;
+        try {
+            code = new WfmCli().run(args);
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            code = 1;
+        }
+        System.exit(code);
+    }
+}
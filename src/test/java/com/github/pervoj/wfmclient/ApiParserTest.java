@@ -0,0 +1,150 @@
+/* ApiParserTest.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.TreeMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of WFM API requests against local stand-in server
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class ApiParserTest {
+    private StandInServer server;
+    
+    /**
+     * Starts stand-in server with a few files and an empty directory
+     * 
+     * @throws Exception when server can't be started
+     */
+    @BeforeEach
+    public void startServer() throws Exception {
+        TreeMap<String, byte[]> files = new TreeMap<>();
+        files.put("readme.txt", "Hello".getBytes(StandardCharsets.UTF_8));
+        files.put("docs/manual.pdf", new byte[100]);
+        files.put("docs/images/logo.png", new byte[10]);
+        server = new StandInServer(files, "docs/v1.2").start();
+    }
+    
+    /**
+     * Stops stand-in server
+     */
+    @AfterEach
+    public void stopServer() {
+        server.close();
+    }
+    
+    /**
+     * File list contains all files and directories, directories end with slash
+     * 
+     * @throws Exception when file list can't be loaded
+     */
+    @Test
+    public void listingContainsAllItems() throws Exception {
+        String[] entries = new ApiParser().getListing(server.getUrl(), null).getEntries();
+        Arrays.sort(entries);
+        
+        assertArrayEquals(new String[] {"docs/", "docs/images/", "docs/images/logo.png", "docs/manual.pdf", "docs/v1.2/", "readme.txt"}, entries);
+    }
+    
+    /**
+     * File list is transferred compressed with gzip and decoded by client
+     * 
+     * @throws Exception when file list can't be loaded
+     */
+    @Test
+    public void listingIsTransferredCompressed() throws Exception {
+        long received = HttpTransport.getReceivedBytes();
+        long decoded = HttpTransport.getDecodedBytes();
+        long sent = server.getSentBytes();
+        
+        new ApiParser().getListing(server.getUrl(), null);
+        
+        received = HttpTransport.getReceivedBytes() - received;
+        decoded = HttpTransport.getDecodedBytes() - decoded;
+        assertEquals(server.getSentBytes() - sent, received, "Client received the bytes sent by server");
+        assertTrue(received < decoded, "Received " + received + " bytes, decoded " + decoded + " bytes");
+    }
+    
+    /**
+     * Hash of file list covers the whole page, not only the part read by parser
+     * 
+     * @throws Exception when file list can't be loaded
+     */
+    @Test
+    public void listingHashCoversWholePage() throws Exception {
+        HttpResponse<byte[]> page = HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(server.getUrl() + "?api")).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        String expected = new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(page.body())).toString(16);
+        
+        assertEquals(expected, new ApiParser().getListing(server.getUrl(), null).getHash());
+    }
+    
+    /**
+     * Unchanged file list is returned as the cached instance
+     * 
+     * @throws Exception when file list can't be loaded
+     */
+    @Test
+    public void unchangedListingReturnsCached() throws Exception {
+        ServerListing first = new ApiParser().getListing(server.getUrl(), null);
+        
+        assertSame(first, new ApiParser().getListing(server.getUrl(), first));
+    }
+    
+    /**
+     * Type API tells file from directory
+     * 
+     * @throws Exception when server can't be asked
+     */
+    @Test
+    public void typeApiTellsFileFromDirectory() throws Exception {
+        assertTrue(new ApiParser().isFile(server.getUrl(), "docs/manual.pdf"));
+        assertFalse(new ApiParser().isFile(server.getUrl(), "docs/v1.2"));
+    }
+    
+    /**
+     * Error of server is reported with its status
+     */
+    @Test
+    public void serverErrorIsReported() {
+        server.setFailureRate(1);
+        
+        Exception e = assertThrows(Exception.class, () -> new ApiParser().getListing(server.getUrl(), null));
+        assertTrue(e.getMessage().contains("500"), e.getMessage());
+    }
+}
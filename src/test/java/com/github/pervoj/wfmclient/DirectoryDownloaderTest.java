@@ -0,0 +1,111 @@
+/* DirectoryDownloaderTest.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of downloading directories from file list against local stand-in server
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class DirectoryDownloaderTest {
+    private StandInServer server;
+    private File dir;
+    private File serverDir;
+    
+    /**
+     * Starts stand-in server with one file
+     * 
+     * @throws Exception when server can't be started
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        TreeMap<String, byte[]> files = new TreeMap<>();
+        files.put("docs/a.txt", "A".getBytes(StandardCharsets.UTF_8));
+        server = new StandInServer(files).start();
+        
+        dir = Files.createTempDirectory("wfm-test").toFile();
+        serverDir = new File(dir, "server");
+    }
+    
+    /**
+     * Stops stand-in server and deletes downloaded files
+     * 
+     * @throws Exception when files can't be deleted
+     */
+    @AfterEach
+    public void tearDown() throws Exception {
+        server.close();
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    /**
+     * Listed paths leading outside of the server directory are not downloaded
+     * 
+     * @throws Exception when files can't be downloaded
+     */
+    @Test
+    public void pathsOutsideOfServerDirAreSkipped() throws Exception {
+        ListingIndex index = new ListingIndex(new String[] {"docs/", "docs/a.txt", "../", "../evil.txt", "docs/../", "docs/../../", "docs/../../evil.txt"});
+        DirectoryDownloader downloader = new DirectoryDownloader(new DownloadQueue(1, 1));
+        
+        List<DownloadJob> jobs = downloader.download(index, "stand-in", server.getUrl(), "", serverDir);
+        for (DownloadJob job : jobs) {
+            job.waitFor();
+        }
+        
+        assertEquals(1, jobs.size());
+        assertArrayEquals("A".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(new File(serverDir, "docs" + File.separator + "a.txt").toPath()));
+        assertFalse(new File(dir, "evil.txt").exists());
+        assertThrows(Exception.class, () -> downloader.download(index, "stand-in", server.getUrl(), "../evil.txt", serverDir));
+    }
+    
+    /**
+     * Local file is resolved only inside of the server directory
+     * 
+     * @throws Exception when path can't be resolved
+     */
+    @Test
+    public void localFileStaysInServerDir() throws Exception {
+        assertEquals(new File(serverDir, "docs" + File.separator + "a.txt"), DirectoryDownloader.getLocalFile(serverDir, "docs/a.txt"));
+        assertEquals(serverDir, DirectoryDownloader.getLocalFile(serverDir, ""));
+        assertNull(DirectoryDownloader.getLocalFile(serverDir, ".."));
+        assertNull(DirectoryDownloader.getLocalFile(serverDir, "docs/../.."));
+        assertNull(DirectoryDownloader.getLocalFile(serverDir, "docs/../../server2/a.txt"));
+    }
+}
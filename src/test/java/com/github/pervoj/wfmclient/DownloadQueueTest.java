@@ -0,0 +1,179 @@
+/* DownloadQueueTest.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of download queue limits and states against local stand-in server
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class DownloadQueueTest {
+    private static final int SIZE = 2 * 1024 * 1024;
+    
+    private TreeMap<String, byte[]> files;
+    private StandInServer server;
+    private File dir;
+    
+    /**
+     * Starts stand-in server with files downloaded in 4 parts
+     * 
+     * @throws Exception when server can't be started
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        files = new TreeMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 3; i++) {
+            byte[] content = new byte[SIZE];
+            random.nextBytes(content);
+            files.put("data/file" + i + ".bin", content);
+        }
+        server = new StandInServer(files).start();
+        server.setBandwidth(8 * 1024 * 1024); // Parts must overlap
+        
+        dir = Files.createTempDirectory("wfm-test").toFile();
+        ApiParser.setDownloadSegments(4, 256 * 1024);
+        ApiParser.setDownloadCompression(false);
+    }
+    
+    /**
+     * Stops stand-in server and deletes downloaded files
+     * 
+     * @throws Exception when files can't be deleted
+     */
+    @AfterEach
+    public void tearDown() throws Exception {
+        server.close();
+        ApiParser.setDownloadSegments(4, 8 * 1024 * 1024); // Default settings
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    /**
+     * Parts of files are downloaded only in free connections of the server limit
+     * 
+     * @throws Exception when files can't be downloaded
+     */
+    @Test
+    public void segmentsCountToServerLimit() throws Exception {
+        DownloadQueue queue = new DownloadQueue(4, 2);
+        DownloadJob[] jobs = new DownloadJob[files.size()];
+        int i = 0;
+        for (String path : files.keySet()) {
+            jobs[i++] = queue.add(new DownloadJob("stand-in", server.getUrl(), path, new File(dir, path), DownloadJob.Priority.BULK, null, null));
+        }
+        
+        for (DownloadJob job : jobs) {
+            job.waitFor();
+            assertEquals(DownloadJob.State.FINISHED, job.getState(), () -> String.valueOf(job.getError()));
+            assertArrayEquals(files.get(job.getFilePath()), Files.readAllBytes(job.getDownloadedFile().toPath()));
+        }
+        assertTrue(server.getMaxConcurrentRequests() <= 2, "Server handled " + server.getMaxConcurrentRequests() + " requests at the same time");
+    }
+    
+    /**
+     * Server is asked for type of file only once for one file list
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void typeIsAskedOnceForListing() throws Exception {
+        DownloadQueue queue = new DownloadQueue(1, 1);
+        ListingIndex index = new ListingIndex(new ApiParser().getListing(server.getUrl(), null).getEntries());
+        String path = files.firstKey();
+        assertEquals(ListingIndex.Type.UNKNOWN, index.getType(path), "Listed leaf can be file or empty directory");
+        
+        for (int i = 0; i < 2; i++) {
+            DownloadJob job = queue.add(new DownloadJob("stand-in", server.getUrl(), path, new File(dir, path), DownloadJob.Priority.BULK, index, null));
+            job.waitFor();
+            assertEquals(DownloadJob.State.FINISHED, job.getState(), () -> String.valueOf(job.getError()));
+        }
+        
+        assertEquals(1, server.getTypeRequests());
+        assertEquals(ListingIndex.Type.FILE, index.getType(path));
+    }
+    
+    /**
+     * Download canceled after the file was downloaded stays canceled
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void canceledDownloadDoesNotFinish() throws Exception {
+        DownloadQueue queue = new DownloadQueue(1, 1);
+        String path = files.firstKey();
+        DownloadJob job = queue.add(new DownloadJob("stand-in", server.getUrl(), path, new File(dir, path), DownloadJob.Priority.BULK, null,
+                finished -> queue.cancel(finished))); // User cancels download just before it ends
+        String nextPath = files.lastKey();
+        DownloadJob next = queue.add(new DownloadJob("stand-in", server.getUrl(), nextPath, new File(dir, nextPath), DownloadJob.Priority.BULK, null, null));
+        
+        next.waitFor(); // The next download starts after the canceled one ended
+        
+        assertEquals(DownloadJob.State.CANCELED, job.getState());
+        assertEquals(DownloadJob.State.FINISHED, next.getState());
+    }
+    
+    /**
+     * Waiting downloads start by priority and canceled ones never start
+     * 
+     * @throws Exception when files can't be downloaded
+     */
+    @Test
+    public void waitingDownloadsStartByPriority() throws Exception {
+        DownloadQueue queue = new DownloadQueue(1, 1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        String[] paths = files.keySet().toArray(new String[0]);
+        DownloadJob first = queue.add(new DownloadJob("stand-in", server.getUrl(), paths[0], new File(dir, paths[0]), DownloadJob.Priority.BULK, null,
+                finished -> order.add(finished.getFilePath()))); // Blocks the only slot
+        DownloadJob canceled = queue.add(new DownloadJob("stand-in", server.getUrl(), paths[1], new File(dir, "canceled"), DownloadJob.Priority.BULK, null,
+                finished -> order.add("canceled")));
+        DownloadJob bulk = queue.add(new DownloadJob("stand-in", server.getUrl(), paths[1], new File(dir, paths[1]), DownloadJob.Priority.BULK, null,
+                finished -> order.add(finished.getFilePath())));
+        DownloadJob open = queue.add(new DownloadJob("stand-in", server.getUrl(), paths[2], new File(dir, paths[2]), DownloadJob.Priority.OPEN, null,
+                finished -> order.add(finished.getFilePath())));
+        queue.cancel(canceled);
+        
+        bulk.waitFor();
+        
+        assertEquals(DownloadJob.State.FINISHED, first.getState(), () -> String.valueOf(first.getError()));
+        assertEquals(DownloadJob.State.FINISHED, open.getState(), () -> String.valueOf(open.getError()));
+        assertEquals(DownloadJob.State.CANCELED, canceled.getState());
+        assertEquals(List.of(paths[0], paths[2], paths[1]), order);
+        assertTrue(!new File(dir, "canceled").exists(), "Canceled download was started");
+    }
+}
@@ -0,0 +1,328 @@
+/* DownloadTest.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of downloading and continuing downloads against local stand-in server
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class DownloadTest {
+    private static final int SIZE = 3 * 1024 * 1024;
+    
+    private byte[] content;
+    private StandInServer server;
+    private File dir;
+    private File file;
+    private String url;
+    
+    /**
+     * Starts stand-in server with one file, files are downloaded in one stream
+     * 
+     * @throws Exception when server can't be started
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        content = new byte[SIZE];
+        new Random(1).nextBytes(content);
+        TreeMap<String, byte[]> files = new TreeMap<>();
+        files.put("data/file.bin", content);
+        server = new StandInServer(files).start();
+        url = ApiParser.getFileUrl(server.getUrl(), "data/file.bin");
+        
+        dir = Files.createTempDirectory("wfm-test").toFile();
+        file = new File(dir, "file.bin");
+        ApiParser.setDownloadSegments(1, 8 * 1024 * 1024);
+        ApiParser.setDownloadCompression(false);
+    }
+    
+    /**
+     * Stops stand-in server and deletes downloaded files
+     * 
+     * @throws Exception when files can't be deleted
+     */
+    @AfterEach
+    public void tearDown() throws Exception {
+        server.close();
+        ApiParser.setDownloadSegments(4, 8 * 1024 * 1024); // Default settings
+        ApiParser.setDownloadCompression(false);
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+    
+    /**
+     * Canceled download is continued from the end of the partial file
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void canceledDownloadIsContinued() throws Exception {
+        cancelAfter(SIZE / 3);
+        long partLength = new File(file.getPath() + ".part").length();
+        assertTrue(partLength >= SIZE / 3 && partLength < SIZE, "Partial file has " + partLength + " bytes");
+        assertFalse(file.exists());
+        
+        long sent = server.getSentBytes();
+        long received = new ApiParser().downloadFile(url, file.getPath(), null);
+        
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertEquals(SIZE - partLength, received);
+        assertEquals(SIZE - partLength, server.getSentBytes() - sent, "Only the rest of the file is sent");
+    }
+    
+    /**
+     * Partial file of other version of the file is downloaded again from the start
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void changedFileIsDownloadedAgain() throws Exception {
+        cancelAfter(SIZE / 3);
+        byte[] changed = content.clone();
+        changed[0]++;
+        changed[SIZE - 1]++;
+        server.putFile("data/file.bin", changed);
+        
+        long sent = server.getSentBytes();
+        new ApiParser().downloadFile(url, file.getPath(), null);
+        
+        assertArrayEquals(changed, Files.readAllBytes(file.toPath()));
+        assertEquals(SIZE, server.getSentBytes() - sent, "If-Range didn't match, so the whole file is sent");
+    }
+    
+    /**
+     * Partial file, which is already complete, is downloaded again after HTTP 416
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void completePartIsDownloadedAgain() throws Exception {
+        cancelAfter(SIZE / 3);
+        Files.write(new File(file.getPath() + ".part").toPath(), content); // Whole file is in partial file, but it wasn't moved
+        
+        long sent = server.getSentBytes();
+        new ApiParser().downloadFile(url, file.getPath(), null);
+        
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertEquals(SIZE, server.getSentBytes() - sent, "Range after the end of file got HTTP 416 and the whole file was sent");
+    }
+    
+    /**
+     * Downloaded file replaces the old file only when it is complete
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void completeFileIsMovedToPath() throws Exception {
+        byte[] old = "old version".getBytes(StandardCharsets.UTF_8);
+        Files.write(file.toPath(), old);
+        
+        new ApiParser().downloadFile(url, file.getPath(), (transferred, total) -> {
+            if (transferred < total) { // Old file is kept until the new one is complete
+                assertContent(old);
+            }
+        });
+        
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertFalse(new File(file.getPath() + ".part").exists());
+        assertFalse(new File(file.getPath() + ".part.info").exists());
+    }
+    
+    /**
+     * File downloaded compressed with gzip is saved decoded
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void compressedFileIsDecoded() throws Exception {
+        byte[] text = "Hello, World!\n".repeat(SIZE / 14).getBytes(StandardCharsets.UTF_8);
+        server.putFile("data/file.bin", text);
+        ApiParser.setDownloadCompression(true);
+        long received = HttpTransport.getReceivedBytes();
+        
+        new ApiParser().downloadFile(url, file.getPath(), null);
+        
+        assertArrayEquals(text, Files.readAllBytes(file.toPath()));
+        received = HttpTransport.getReceivedBytes() - received;
+        assertTrue(received < text.length / 10, "Received " + received + " bytes of " + text.length + " bytes");
+    }
+    
+    /**
+     * Canceled download in parts is continued only in the missing parts
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void canceledSegmentsAreContinued() throws Exception {
+        ApiParser.setDownloadSegments(4, 256 * 1024);
+        cancelAfter(SIZE / 3);
+        List<String> info = Files.readAllLines(new File(file.getPath() + ".part.info").toPath());
+        assertEquals(2 + 4, info.size(), "Information contains version, size and 4 parts");
+        assertFalse(file.exists());
+        
+        long sent = server.getSentBytes();
+        long received = new ApiParser().downloadFile(url, file.getPath(), null);
+        
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertTrue(received < SIZE, "Received " + received + " bytes");
+        assertEquals(received, server.getSentBytes() - sent, "Only the missing parts are sent");
+        assertFalse(new File(file.getPath() + ".part.info").exists());
+    }
+    
+    /**
+     * Partial file downloaded in parts is continued in one stream, when parts are not used anymore
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void canceledSegmentsAreContinuedInOneStream() throws Exception {
+        ApiParser.setDownloadSegments(4, 256 * 1024);
+        cancelAfter(SIZE / 3);
+        ApiParser.setDownloadSegments(1, 256 * 1024);
+        
+        long sent = server.getSentBytes();
+        long received = new ApiParser().downloadFile(url, file.getPath(), null);
+        
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertEquals(received, server.getSentBytes() - sent, "Only the rest after the first gap is sent");
+    }
+    
+    /**
+     * Partial file downloaded in parts of other version of the file is downloaded again
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void changedFileIsDownloadedInSegmentsAgain() throws Exception {
+        ApiParser.setDownloadSegments(4, 256 * 1024);
+        cancelAfter(SIZE / 3);
+        byte[] changed = content.clone();
+        changed[0]++;
+        changed[SIZE - 1]++;
+        server.putFile("data/file.bin", changed);
+        
+        long received = new ApiParser().downloadFile(url, file.getPath(), null);
+        
+        assertArrayEquals(changed, Files.readAllBytes(file.toPath()));
+        assertEquals(SIZE, received);
+    }
+    
+    /**
+     * File changed during download in parts isn't mixed from both versions
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void fileChangedBetweenSegmentsIsDownloadedAgain() throws Exception {
+        ApiParser.setDownloadSegments(4, 256 * 1024);
+        byte[] changed = content.clone();
+        changed[0]++;
+        changed[SIZE - 1]++;
+        
+        // Without free connections parts are downloaded one after another, the file changes during the first one
+        new ApiParser().downloadFile(url, file.getPath(), new ApiParser.ConnectionLimit() {
+            @Override
+            public int acquire(int count) {
+                return 0;
+            }
+            
+            @Override
+            public void release(int count) {
+            }
+        }, (transferred, total) -> {
+            if (transferred < SIZE / 4) { // Is the first part downloaded?
+                server.putFile("data/file.bin", changed);
+            }
+        });
+        
+        assertArrayEquals(changed, Files.readAllBytes(file.toPath()));
+    }
+    
+    /**
+     * File without version is downloaded in one stream, because parts could be from different versions
+     * 
+     * @throws Exception when file can't be downloaded
+     */
+    @Test
+    public void fileWithoutValidatorIsNotSplit() throws Exception {
+        server.setValidators(false);
+        ApiParser.setDownloadSegments(4, 256 * 1024);
+        cancelAfter(SIZE / 3);
+        assertEquals(0, new File(file.getPath() + ".part.info").length(), "File is downloaded in one stream without version");
+        
+        long received = new ApiParser().downloadFile(url, file.getPath(), null);
+        
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertEquals(SIZE, received, "Partial file without version can't be continued");
+    }
+    
+    /**
+     * Starts download and cancels it, as download queue does, after transferred bytes
+     * 
+     * @param bytes Count of bytes after which download is canceled
+     * @throws Exception when download failed for other reason
+     */
+    private void cancelAfter(long bytes) throws Exception {
+        try {
+            assertThrows(InterruptedIOException.class, () -> new ApiParser().downloadFile(url, file.getPath(), (transferred, total) -> {
+                if (transferred >= bytes) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        } finally {
+            Thread.interrupted(); // Clear interrupt of this thread
+        }
+        server.waitForIdle(); // Server doesn't send anything more for the canceled download
+    }
+    
+    /**
+     * Checks content of file at download path
+     * 
+     * @param expected Expected content
+     */
+    private void assertContent(byte[] expected) {
+        try {
+            assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
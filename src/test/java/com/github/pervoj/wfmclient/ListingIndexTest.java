@@ -0,0 +1,213 @@
+/* ListingIndexTest.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of file tree built from the index of file list
+ *
+ * The tree must be the same as the tree of the original recursive builder,
+ * which is kept here with the same logic. The original builder compared paths by
+ * prefix, so generated names are never prefix of another name, and it
+ * didn't know directories marked with slash, so they aren't generated.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class ListingIndexTest {
+    /**
+     * Trees of random file lists are the same as trees of the original builder
+     */
+    @Test
+    public void treeMatchesOriginalBuilder() {
+        for (int seed = 0; seed < 10; seed++) {
+            for (int size : new int[] {0, 1, 10, 300, 1500}) {
+                String[] files = generate(new Random(seed), size);
+                
+                DefaultMutableTreeNode expected = new DefaultMutableTreeNode("server");
+                addChilds(expected, files, filterDir(null, files));
+                ListingNode actual = new ListingNode(new ListingIndex(files), "", "server");
+                
+                assertSameTree(expected, actual, "seed " + seed + ", size " + size + ": ");
+            }
+        }
+    }
+    
+    /**
+     * Type told by server is remembered, other unknown items stay unknown
+     */
+    @Test
+    public void toldTypeIsRemembered() {
+        ListingIndex index = new ListingIndex(new String[] {"docs", "docs/manual.pdf", "docs/v1.2", "readme"});
+        assertEquals(ListingIndex.Type.DIRECTORY, index.getType("docs"));
+        assertEquals(ListingIndex.Type.UNKNOWN, index.getType("docs/v1.2"));
+        assertEquals(ListingIndex.Type.UNKNOWN, index.getType("readme"));
+        
+        index.setType("docs/v1.2", ListingIndex.Type.DIRECTORY);
+        index.setType("readme", ListingIndex.Type.FILE);
+        
+        assertEquals(ListingIndex.Type.DIRECTORY, index.getType("docs/v1.2"));
+        assertEquals(ListingIndex.Type.FILE, index.getType("readme"));
+        assertEquals(ListingIndex.Type.UNKNOWN, index.getType("docs/manual.pdf"));
+    }
+    
+    /**
+     * Files whose parent directory isn't listed are left out, as by the original builder
+     */
+    @Test
+    public void unlistedParentIsLeftOut() {
+        String[] files = {"a001", "b002/c003", "a001/d004", "e005/f006/g007", "e005"};
+        
+        DefaultMutableTreeNode expected = new DefaultMutableTreeNode("server");
+        addChilds(expected, files, filterDir(null, files));
+        ListingNode actual = new ListingNode(new ListingIndex(files), "", "server");
+        
+        assertSameTree(expected, actual, "");
+        assertEquals(2, actual.getChildCount());
+    }
+    
+    /**
+     * Compares titles and order of all items of two trees
+     * 
+     * @param expected Tree of the original builder
+     * @param actual Lazy tree of the index, it is expanded by this method
+     * @param path Path of compared items for failure message
+     */
+    private static void assertSameTree(TreeNode expected, ListingNode actual, String path) {
+        actual.loadChildren();
+        path += actual.getUserObject() + "/";
+        assertEquals(expected.getChildCount(), actual.getChildCount(), "Count of subitems of " + path);
+        for (int i = 0; i < expected.getChildCount(); i++) {
+            DefaultMutableTreeNode expectedChild = (DefaultMutableTreeNode) expected.getChildAt(i);
+            ListingNode actualChild = (ListingNode) actual.getChildAt(i);
+            assertEquals(expectedChild.getUserObject(), actualChild.getUserObject(), "Subitem " + i + " of " + path);
+            assertEquals(expectedChild.isLeaf(), actualChild.isLeaf(), "Leaf " + path + actualChild.getUserObject());
+            assertSameTree(expectedChild, actualChild, path);
+        }
+    }
+    
+    /**
+     * Generates file list in random order, some items are in directories which aren't listed
+     * 
+     * @param random Random generator
+     * @param size Count of listed items
+     * @return File list
+     */
+    private static String[] generate(Random random, int size) {
+        ArrayList<String> directories = new ArrayList<>();
+        ArrayList<String> files = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            // Choose root directory, listed directory or sometimes directory which won't be listed
+            String parent;
+            int choice = random.nextInt(10);
+            if (choice < 2 || directories.isEmpty()) {
+                parent = "";
+            } else if (choice == 2) {
+                parent = String.format("u%06d/", i);
+            } else {
+                parent = directories.get(random.nextInt(directories.size())) + "/";
+            }
+            
+            // Names have the same length, so none of them is prefix of another one
+            if (random.nextInt(3) == 0) {
+                directories.add(parent + String.format("d%06d", i));
+                files.add(parent + String.format("d%06d", i));
+            } else {
+                files.add(parent + String.format("f%06d.txt", i));
+            }
+        }
+        
+        Collections.shuffle(files, random); // Subitems can be listed before their directory
+        return files.toArray(new String[0]);
+    }
+    
+    /**
+     * Original method for recursive filling directory tree node with subdirectories and subfiles
+     * 
+     * @param rootNode Directory tree node which you want to fill
+     * @param allFiles Complete array of files
+     * @param files Array of subdirectories and files which belongs to this directory
+     */
+    private static void addChilds(DefaultMutableTreeNode rootNode, String[] allFiles, String[] files) {
+        for (String file : files) { // Iterate file array
+            DefaultMutableTreeNode subItem = new DefaultMutableTreeNode(getNameFromPath(file)); // Define subitem tree node
+            
+            if (isDir(file, allFiles)) { // Has iterated item another subitems?
+                addChilds(subItem, allFiles, filterDir(file, allFiles)); // Fill subitem with its subitems
+            }
+            
+            rootNode.add(subItem); // Add subitem to root tree node
+        }
+    }
+    
+    /**
+     * Original method, which returns last part of path - file (directory) name
+     * 
+     * @param path File (directory) path for which you want to get name
+     * @return File (directory) name
+     */
+    private static String getNameFromPath(String path) {
+        String[] splitted = path.split("/");
+        return splitted[splitted.length - 1];
+    }
+    
+    /**
+     * Original method, has this directory (file) another subdirectories (subfiles)?
+     * 
+     * @param dir Directory
+     * @param files Complete array of files
+     * @return true - this directory has another subdirectories (subfiles), false - this is file or empty directory
+     */
+    private static boolean isDir(String dir, String[] files) {
+        for (String file : files) { // Iterate complete file list
+            if (!file.equals(dir) && file.startsWith(dir)) { // If isn't iterated controlled directory and if iterated file (directory) starts with controlled path
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Original method, which filters complete file list only to files, which belongs to filtered directory
+     * 
+     * @param dir Directory to filter, null for root directory
+     * @param files Complete file list
+     * @return Filtered array of files
+     */
+    private static String[] filterDir(String dir, String[] files) {
+        ArrayList<String> filelist = new ArrayList<>(); // Define file array list
+        for (String file : files) {
+            if (dir == null) { // If will be iterated root directory
+                if (!file.contains("/")) {
+                    filelist.add(file);
+                }
+            } else if (!file.equals(dir) && file.startsWith(dir) && dir.split("/").length == file.split("/").length - 1) {
+                filelist.add(file); // Add file which belongs directly to controlled directory
+            }
+        }
+        return filelist.toArray(new String[0]);
+    }
+}
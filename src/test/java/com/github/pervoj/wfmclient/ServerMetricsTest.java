@@ -0,0 +1,44 @@
+/* ServerMetricsTest.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of per-server metrics
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class ServerMetricsTest {
+    /**
+     * Throughput of download larger than 8 GiB doesn't overflow
+     */
+    @Test
+    public void largeDownloadThroughput() {
+        ServerMetrics metrics = ServerMetrics.get("http://large.example/");
+        metrics.reset();
+        
+        metrics.recordDownload(10_000_000_000L, 10L * 1024 * 1024 * 1024); // 10 GiB in 10 seconds
+        
+        assertEquals(1024 * 1024, metrics.getDownloadKilobytesPerSecond().getMean());
+        assertEquals(10L * 1024 * 1024 * 1024, metrics.getDownloadBytes());
+    }
+}
@@ -0,0 +1,433 @@
+/* StandInServer.java
+ *
+ * Copyright (C) 2021 Vojtěch Perník <pervoj@gmx.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.github.pervoj.wfmclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local WFM server for tests, benchmarks and manual testing without network
+ *
+ * Serves file list, check and type API and files from memory, files can be
+ * downloaded in parts. Responses are compressed with gzip, if client accepts
+ * it. Latency, bandwidth limit and failures can be set to simulate slow or
+ * unreliable servers.
+ *
+ * @author Vojtěch Perník <pervoj@gmx.com>
+ */
+public class StandInServer implements AutoCloseable {
+    private static final String LAST_MODIFIED = "Mon, 01 Jan 2024 00:00:00 GMT";
+    private static final String FOOTER = "<footer>Web File Manager</footer>\n".repeat(512); // Real pages continue after API content
+    
+    private TreeMap<String, byte[]> files;
+    private ConcurrentHashMap<String, String> etags;
+    private ConcurrentHashMap<String, byte[]> gzipped;
+    private HttpServer server;
+    private ExecutorService executor;
+    private volatile long latency;
+    private volatile long bandwidth;
+    private volatile double failureRate;
+    private volatile boolean validators = true;
+    private volatile boolean compression = true;
+    private AtomicLong sentBytes = new AtomicLong();
+    private AtomicInteger requests = new AtomicInteger();
+    private AtomicInteger maxRequests = new AtomicInteger();
+    private AtomicInteger typeRequests = new AtomicInteger();
+    
+    /**
+     * Stand-in server constructor method, the server isn't started
+     * 
+     * @param files File contents by paths, their parent directories are listed too
+     * @param directories Paths of empty directories
+     */
+    public StandInServer(Map<String, byte[]> files, String... directories) {
+        this.files = new TreeMap<>(files);
+        etags = new ConcurrentHashMap<>();
+        gzipped = new ConcurrentHashMap<>();
+        for (String path : files.keySet()) {
+            // List all parent directories of the file
+            for (int slash = path.indexOf('/'); slash > 0; slash = path.indexOf('/', slash + 1)) {
+                this.files.put(path.substring(0, slash + 1), null);
+            }
+        }
+        for (String directory : directories) {
+            this.files.put(directory + "/", null);
+        }
+    }
+    
+    /**
+     * Sets time waited before every response
+     * 
+     * @param millis Latency in milliseconds
+     */
+    public void setLatency(long millis) {
+        latency = millis;
+    }
+    
+    /**
+     * Sets maximal speed of sending response bodies
+     * 
+     * @param bytesPerSecond Bandwidth in bytes per second, 0 for unlimited bandwidth
+     */
+    public void setBandwidth(long bytesPerSecond) {
+        bandwidth = bytesPerSecond;
+    }
+    
+    /**
+     * Sets part of requests, which fail with HTTP 500
+     * 
+     * @param rate Failure rate from 0 to 1
+     */
+    public void setFailureRate(double rate) {
+        failureRate = rate;
+    }
+    
+    /**
+     * Sets if files are sent with ETag and Last-Modified, which identify their version
+     * 
+     * @param send true - validators are sent, false - server doesn't know file versions
+     */
+    public void setValidators(boolean send) {
+        validators = send;
+    }
+    
+    /**
+     * Sets if responses are compressed with gzip, when client accepts it
+     * 
+     * @param compress true - responses are compressed, false - responses are sent as they are
+     */
+    public void setCompression(boolean compress) {
+        compression = compress;
+    }
+    
+    /**
+     * Replaces content of file, as if the file was changed on server, call it only between requests
+     * 
+     * @param path File path
+     * @param content New file content
+     */
+    public void putFile(String path, byte[] content) {
+        files.put(path, content);
+        etags.remove(path); // File gets new ETag
+        gzipped.remove(path);
+    }
+    
+    /**
+     * Returns count of bytes of all sent response bodies
+     * 
+     * @return Count of sent bytes
+     */
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+    
+    /**
+     * Returns the highest count of requests handled at the same time
+     * 
+     * @return Count of requests
+     */
+    public int getMaxConcurrentRequests() {
+        return maxRequests.get();
+    }
+    
+    /**
+     * Waits until the server handles no request, e.g. after client closed connections
+     * 
+     * @throws InterruptedException when waiting thread is interrupted
+     */
+    public void waitForIdle() throws InterruptedException {
+        while (requests.get() > 0) {
+            Thread.sleep(10);
+        }
+    }
+    
+    /**
+     * Returns count of requests of type API
+     * 
+     * @return Count of requests
+     */
+    public int getTypeRequests() {
+        return typeRequests.get();
+    }
+    
+    /**
+     * Starts the server on free port of loopback interface
+     * 
+     * @return This server
+     * @throws IOException when server can't be started
+     */
+    public StandInServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stand-in-server");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return this;
+    }
+    
+    /**
+     * Returns URL of the server
+     * 
+     * @return WFM server URL
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+    
+    /**
+     * Stops the server
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Handles one request
+     * 
+     * @param exchange Request and response
+     * @throws IOException when response can't be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        maxRequests.accumulateAndGet(requests.incrementAndGet(), Math::max);
+        try {
+            if (latency > 0) {
+                Thread.sleep(latency);
+            }
+            if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) { // Simulate server error
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            
+            String query = exchange.getRequestURI().getRawQuery();
+            String path = exchange.getRequestURI().getPath().substring(1);
+            if (query == null) {
+                sendFile(exchange, path);
+            } else if (query.equals("check-api")) {
+                sendApi(exchange, "web-file-manager");
+            } else if (query.equals("api")) {
+                sendApi(exchange, String.join("<br>\n", files.keySet()));
+            } else if (query.startsWith("api-type=")) {
+                String typed = URLDecoder.decode(query.substring("api-type=".length()), StandardCharsets.UTF_8);
+                typeRequests.incrementAndGet();
+                sendApi(exchange, files.get(typed) != null ? "file" : "directory");
+            } else {
+                exchange.sendResponseHeaders(400, -1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+            requests.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Sends API page with content
+     * 
+     * @param exchange Request and response
+     * @param content API content
+     * @throws IOException when response can't be sent
+     * @throws InterruptedException when server is stopped
+     */
+    private void sendApi(HttpExchange exchange, String content) throws IOException, InterruptedException {
+        byte[] body = ("<!DOCTYPE html>\n<html><head><title>WFM</title></head><body>\n<div id=\"wfm-api\">" + content + "</div>\n"
+                + FOOTER + "</body></html>").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+        if (acceptsGzip(exchange)) {
+            body = gzip(body);
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        sendBody(exchange, 200, body, 0, body.length);
+    }
+    
+    /**
+     * Sends file or its part
+     * 
+     * @param exchange Request and response
+     * @param path File path
+     * @throws IOException when response can't be sent
+     * @throws InterruptedException when server is stopped
+     */
+    private void sendFile(HttpExchange exchange, String path) throws IOException, InterruptedException {
+        byte[] content = files.get(path);
+        if (content == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        
+        String etag = etags.computeIfAbsent(path, p -> "\"" + hash(content) + "\""); // Count hash only for requested files
+        if (validators) {
+            exchange.getResponseHeaders().add("ETag", etag);
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+        }
+        exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+        
+        // Use range, if it is requested for this version of file
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null && range.startsWith("bytes=") && (ifRange == null || validators && (ifRange.equals(etag) || ifRange.equals(LAST_MODIFIED)))) {
+            String[] bounds = range.substring("bytes=".length()).split("-", 2);
+            long start = Long.parseLong(bounds[0]);
+            long end = bounds[1].isEmpty() ? content.length - 1 : Math.min(content.length - 1, Long.parseLong(bounds[1]));
+            if (start >= content.length || start > end) {
+                exchange.getResponseHeaders().add("Content-Range", "bytes */" + content.length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            sendBody(exchange, 206, content, (int) start, (int) (end - start + 1));
+            return;
+        }
+        
+        if (acceptsGzip(exchange)) { // Whole file can be compressed
+            byte[] compressed = gzipped.computeIfAbsent(path, p -> gzip(content));
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            sendBody(exchange, 200, compressed, 0, compressed.length);
+            return;
+        }
+        
+        sendBody(exchange, 200, content, 0, content.length);
+    }
+    
+    /**
+     * Checks if response can be compressed with gzip
+     * 
+     * @param exchange Request and response
+     * @return true - client accepts gzip and compression is enabled, false - response is sent as it is
+     */
+    private boolean acceptsGzip(HttpExchange exchange) {
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return compression && accepted != null && accepted.contains("gzip");
+    }
+    
+    /**
+     * Sends response body with limited bandwidth
+     * 
+     * @param exchange Request and response
+     * @param code HTTP status code
+     * @param body Body bytes
+     * @param offset Position of the first sent byte
+     * @param length Count of sent bytes
+     * @throws IOException when response can't be sent
+     * @throws InterruptedException when server is stopped
+     */
+    private void sendBody(HttpExchange exchange, int code, byte[] body, int offset, int length) throws IOException, InterruptedException {
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        
+        exchange.sendResponseHeaders(code, length == 0 ? -1 : length);
+        OutputStream out = exchange.getResponseBody();
+        int chunk = 16 * 1024;
+        long started = System.nanoTime();
+        for (int sent = 0; sent < length; sent += chunk) {
+            sentBytes.addAndGet(Math.min(chunk, length - sent)); // Count bytes before client can read them
+            out.write(body, offset + sent, Math.min(chunk, length - sent));
+            
+            if (bandwidth > 0) { // Wait until the sent bytes fit to bandwidth
+                long due = (sent + chunk) * 1000L / bandwidth;
+                long elapsed = (System.nanoTime() - started) / 1000000;
+                if (due > elapsed) {
+                    Thread.sleep(due - elapsed);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Creates server with files of file list, all files have the same random content
+     * 
+     * @param paths File list as returned by API, directories end with slash
+     * @param fileSize Size of every file
+     * @return Server, which isn't started
+     */
+    public static StandInServer generate(String[] paths, int fileSize) {
+        byte[] content = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        
+        TreeMap<String, byte[]> generated = new TreeMap<>();
+        ArrayList<String> directories = new ArrayList<>();
+        for (String path : paths) {
+            if (path.endsWith("/")) {
+                directories.add(path.substring(0, path.length() - 1));
+            } else {
+                generated.put(path, content);
+            }
+        }
+        return new StandInServer(generated, directories.toArray(new String[0]));
+    }
+    
+    /**
+     * Compresses response body with gzip
+     * 
+     * @param body Body bytes
+     * @return Compressed body
+     */
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Memory stream doesn't fail
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Counts hash of file content for ETag
+     * 
+     * @param content File content
+     * @return Hash as hexadecimal number
+     */
+    private static String hash(byte[] content) {
+        try {
+            return new BigInteger(1, MessageDigest.getInstance("SHA-1").digest(content)).toString(16);
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // SHA-1 is always available
+        }
+    }
+}